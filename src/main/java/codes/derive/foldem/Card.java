@@ -16,6 +16,8 @@
  */
 package codes.derive.foldem;
 
+import java.util.Collection;
+
 /**
  * Represents a single card in a standard 52-card deck.
  */
@@ -172,6 +174,52 @@ public class Card {
 	public Suit getSuit() {
 		return suit;
 	}
+
+	/**
+	 * Obtains a unique index for this card between 0 and 51 inclusive.
+	 *
+	 * <p>
+	 * Cards are indexed suit first, so every suit occupies a contiguous block
+	 * of 13 indices ordered by card value. This is the same index used by
+	 * {@link Card#mask(Collection)} to place the card in a 52-bit mask.
+	 * </p>
+	 *
+	 * @return The index of this card.
+	 */
+	public int index() {
+		return suit.ordinal() * LABEL.length + value;
+	}
+
+	/**
+	 * Obtains the {@link Card} for the specified index, the inverse of
+	 * {@link Card#index()}.
+	 *
+	 * @param index
+	 *            The card index, between 0 and 51 inclusive.
+	 * @return The {@link Card} with the specified index.
+	 */
+	public static Card fromIndex(int index) {
+		if (index < 0 || index >= Constants.DECK_SIZE) {
+			throw new IllegalArgumentException("Invalid card index " + index);
+		}
+		return new Card(index % LABEL.length, Suit.values()[index / LABEL.length]);
+	}
+
+	/**
+	 * Creates a 52-bit mask containing the specified cards, with each card
+	 * represented by the bit at its {@link Card#index()}.
+	 *
+	 * @param cards
+	 *            The cards.
+	 * @return A mask containing the specified cards.
+	 */
+	public static long mask(Collection<Card> cards) {
+		long mask = 0L;
+		for (Card card : cards) {
+			mask |= 1L << card.index();
+		}
+		return mask;
+	}
 	
 	@Override
 	public boolean equals(Object obj) {
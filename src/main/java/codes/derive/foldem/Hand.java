@@ -80,6 +80,44 @@ public class Hand {
 		return cards.get(0).getSuit().equals(cards.get(1).getSuit());
 	}
 	
+	/**
+	 * Obtains the index of this hand among every hand that can be dealt,
+	 * between 0 and {@link Constants#HAND_COMBINATIONS} exclusive. The
+	 * indices of a hand's cards do not depend on their order.
+	 * 
+	 * <p>
+	 * Hands are ordered by the higher {@link Card#index()} of their cards and
+	 * then by the lower, so the hands made of the first n cards occupy the
+	 * first n(n - 1)/2 indices.
+	 * </p>
+	 * 
+	 * @return The index of this hand.
+	 */
+	public int index() {
+		int a = cards.get(0).index(), b = cards.get(1).index();
+		int high = Math.max(a, b), low = Math.min(a, b);
+		return high * (high - 1) / 2 + low;
+	}
+
+	/**
+	 * Obtains the {@link Hand} for the specified index, the inverse of
+	 * {@link Hand#index()}.
+	 * 
+	 * @param index
+	 *            The hand index, between 0 and 1325 inclusive.
+	 * @return The {@link Hand} with the specified index.
+	 */
+	public static Hand fromIndex(int index) {
+		if (index < 0 || index >= Constants.HAND_COMBINATIONS) {
+			throw new IllegalArgumentException("Invalid hand index " + index);
+		}
+		int high = 1;
+		while ((high + 1) * high / 2 <= index) {
+			high++;
+		}
+		return new Hand(Card.fromIndex(high), Card.fromIndex(index - high * (high - 1) / 2));
+	}
+
 	@Override
 	public String toString() {
 		return cards.get(0).toString().concat(cards.get(1).toString());
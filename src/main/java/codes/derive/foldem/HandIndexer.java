@@ -0,0 +1,840 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import codes.derive.foldem.board.Board;
+
+/**
+ * Maps groups of cards dealt over one or more rounds to a dense index that is
+ * the same for every group of cards that only differs by a permutation of
+ * suits, such as AsKs on 2h7h9c and AhKh on 2s7s9d.
+ *
+ * <p>
+ * Cards within a round are unordered, but cards in different rounds are not
+ * interchangeable, so a {@link HandIndexer} for rounds of 2 and 3 cards
+ * indexes hole cards on a flop. Indices for a round range from 0 to
+ * {@link #size(int)} exclusive with no gaps, and the cards of any index can
+ * be found with {@link #unindex(int, long)}. This follows the hand
+ * isomorphism algorithm by Kevin Waugh: the card values of each suit are
+ * indexed on their own, and suits are then combined in a canonical order,
+ * with suits that hold the same number of cards in every round combined as a
+ * multiset.
+ * </p>
+ *
+ * <p>
+ * Hands and boards can be indexed directly using
+ * {@link #canonical(Hand, Board)} and {@link #canonical(Board)}, which for
+ * example reduce the 1326 starting hands to 169 and the 22100 flops to 1755.
+ * Instances hold no mutable state and can be shared between threads.
+ * </p>
+ */
+public class HandIndexer {
+
+	/* The number of suits and the number of card values in each suit. */
+	private static final int SUITS = 4, VALUES = 13;
+
+	/* The bits used by each round in a packed count of the cards in a suit. */
+	private static final int ROUND_SHIFT = 4, ROUND_MASK = 0xF;
+
+	/* The number of ways to choose from up to 13 card values. */
+	private static final long[][] CHOOSE = new long[VALUES + 1][VALUES + 1];
+
+	/* The index of every set of card values among the sets of its size. */
+	private static final int[] SET_INDICES = new int[1 << VALUES];
+
+	/* Every set of card values of each size, by their index. */
+	private static final int[][] INDEXED_SETS = new int[VALUES + 1][];
+
+	/* The most cards that can be indexed, which keeps every table small. */
+	private static final int MAX_CARDS = 15;
+
+	/* The number of permutations of the suits. */
+	private static final int PERMUTATIONS = 24;
+
+	/* Indexers for hole cards on a board of each size, created when needed. */
+	private static final HandIndexer[] HANDS = new HandIndexer[Constants.BOARD_SIZE + 1];
+
+	/* Indexers for boards of each size, created when needed. */
+	private static final HandIndexer[] BOARDS = new HandIndexer[Constants.BOARD_SIZE + 1];
+
+	static {
+		for (int n = 0; n <= VALUES; n++) {
+			CHOOSE[n][0] = 1;
+			for (int k = 1; k <= n; k++) {
+				CHOOSE[n][k] = CHOOSE[n - 1][k - 1] + CHOOSE[n - 1][k];
+			}
+		}
+
+		/*
+		 * Sets are indexed in colexicographical order.
+		 */
+		for (int size = 0; size <= VALUES; size++) {
+			INDEXED_SETS[size] = new int[(int) CHOOSE[VALUES][size]];
+		}
+		for (int set = 0; set < 1 << VALUES; set++) {
+			int index = 0, size = 0;
+			for (int bits = set; bits != 0; bits &= bits - 1) {
+				index += choose(Integer.numberOfTrailingZeros(bits), ++size);
+			}
+			SET_INDICES[set] = index;
+			INDEXED_SETS[size][index] = set;
+		}
+	}
+
+	/* The number of cards dealt in each round. */
+	private final int[] rounds;
+
+	/* The offset of the first card of each round. */
+	private final int[] starts;
+
+	/*
+	 * The configurations of each round, which are the number of cards dealt in
+	 * each suit in every round so far packed with the first round in the
+	 * highest bits, ordered from the suit with the most cards to the least.
+	 */
+	private final int[][][] configurations;
+
+	/* The first index of each configuration of each round. */
+	private final long[][] offsets;
+
+	/* The number of ways to deal the cards of each suit in a configuration. */
+	private final long[][][] suitSizes;
+
+	/* The number of indices in each round. */
+	private final long[] sizes;
+
+	/*
+	 * The configuration and suit order of every way of splitting the cards of
+	 * each round between suits, indexed as in index(int...).
+	 */
+	private final int[][] permutationConfigurations;
+	private final int[][][] permutationOrders;
+
+	/**
+	 * Constructs a new {@link HandIndexer} for the specified rounds.
+	 *
+	 * @param rounds
+	 *            The number of cards dealt in each round.
+	 */
+	public HandIndexer(int... rounds) {
+		if (rounds.length == 0) {
+			throw new IllegalArgumentException("At least one round is required");
+		}
+		int total = 0;
+		for (int cards : rounds) {
+			if (cards < 1) {
+				throw new IllegalArgumentException("Every round must deal at least one card");
+			}
+			total += cards;
+		}
+		if (rounds.length > 32 / ROUND_SHIFT || total > MAX_CARDS) {
+			throw new IllegalArgumentException("Too many cards to index");
+		}
+		this.rounds = rounds.clone();
+		this.starts = new int[rounds.length];
+		for (int i = 1; i < rounds.length; i++) {
+			starts[i] = starts[i - 1] + rounds[i - 1];
+		}
+		this.configurations = new int[rounds.length][][];
+		this.offsets = new long[rounds.length][];
+		this.suitSizes = new long[rounds.length][][];
+		this.sizes = new long[rounds.length];
+		this.permutationConfigurations = new int[rounds.length][];
+		this.permutationOrders = new int[rounds.length][][];
+		for (int round = 0; round < rounds.length; round++) {
+			tabulate(round);
+		}
+	}
+
+	/**
+	 * Finds every configuration of the specified round and every way of
+	 * splitting the cards dealt so far between suits.
+	 *
+	 * @param round
+	 *            The round.
+	 */
+	private void tabulate(int round) {
+
+		/*
+		 * Find every way of splitting the cards of each round so far between
+		 * suits, and the configurations they make once their suits are
+		 * ordered.
+		 */
+		List<int[]> splits = new ArrayList<>();
+		split(round, 0, 0, rounds[0], new int[SUITS], new int[SUITS], splits);
+		Map<List<Integer>, int[]> found = new HashMap<>();
+		int permutations = 1;
+		for (int i = 0; i <= round; i++) {
+			permutations *= (int) Math.pow(rounds[i] + 1, SUITS - 1);
+		}
+		permutationConfigurations[round] = new int[permutations];
+		permutationOrders[round] = new int[permutations][];
+		int[][] orders = new int[splits.size()][];
+		for (int i = 0; i < splits.size(); i++) {
+			int[] packed = splits.get(i);
+			orders[i] = order(packed);
+			int[] configuration = new int[SUITS];
+			for (int suit = 0; suit < SUITS; suit++) {
+				configuration[suit] = packed[orders[i][suit]];
+			}
+			found.put(list(configuration), configuration);
+		}
+
+		/*
+		 * Sort our configurations and give each of them their share of the
+		 * indices.
+		 */
+		int[][] sorted = found.values().toArray(new int[0][]);
+		Arrays.sort(sorted, (a, b) -> {
+			for (int suit = 0; suit < SUITS; suit++) {
+				if (a[suit] != b[suit]) {
+					return Integer.compare(b[suit], a[suit]);
+				}
+			}
+			return 0;
+		});
+		configurations[round] = sorted;
+		offsets[round] = new long[sorted.length];
+		suitSizes[round] = new long[sorted.length][SUITS];
+		Map<List<Integer>, Integer> ids = new HashMap<>();
+		long offset = 0;
+		for (int id = 0; id < sorted.length; id++) {
+			int[] configuration = sorted[id];
+			ids.put(list(configuration), id);
+			offsets[round][id] = offset;
+			long size = 1;
+			for (int suit = 0; suit < SUITS;) {
+				long suitSize = 1;
+				for (int i = 0, remaining = VALUES; i <= round; i++) {
+					int cards = count(configuration[suit], i);
+					suitSize *= CHOOSE[remaining][cards];
+					remaining -= cards;
+				}
+				int end = group(configuration, suit);
+				for (int i = suit; i < end; i++) {
+					suitSizes[round][id][i] = suitSize;
+				}
+				size *= multisets(suitSize, end - suit);
+				suit = end;
+			}
+			offset += size;
+		}
+		sizes[round] = offset;
+
+		for (int i = 0; i < splits.size(); i++) {
+			int permutation = permutation(splits.get(i), round);
+			int[] configuration = new int[SUITS];
+			for (int suit = 0; suit < SUITS; suit++) {
+				configuration[suit] = splits.get(i)[orders[i][suit]];
+			}
+			permutationConfigurations[round][permutation] = ids.get(list(configuration));
+			permutationOrders[round][permutation] = orders[i];
+		}
+	}
+
+	/**
+	 * Finds every way of splitting the cards dealt up to the specified round
+	 * between suits.
+	 *
+	 * @param last
+	 *            The last round to split the cards of.
+	 * @param round
+	 *            The round being split.
+	 * @param suit
+	 *            The suit being given cards.
+	 * @param remaining
+	 *            The number of cards left to give out in this round.
+	 * @param used
+	 *            The number of cards given to each suit so far.
+	 * @param packed
+	 *            The packed counts of the cards given to each suit so far.
+	 * @param out
+	 *            The list to add the packed counts of every split to.
+	 */
+	private void split(int last, int round, int suit, int remaining, int[] used, int[] packed, List<int[]> out) {
+		if (suit == SUITS) {
+			if (round == last) {
+				out.add(packed.clone());
+			} else {
+				split(last, round + 1, 0, rounds[round + 1], used, packed, out);
+			}
+			return;
+		}
+		int min = suit == SUITS - 1 ? remaining : 0;
+		int max = Math.min(remaining, VALUES - used[suit]);
+		for (int cards = min; cards <= max; cards++) {
+			int oldUsed = used[suit], oldPacked = packed[suit];
+			used[suit] += cards;
+			packed[suit] |= cards << ROUND_SHIFT * (rounds.length - round - 1);
+			split(last, round, suit + 1, remaining - cards, used, packed, out);
+			used[suit] = oldUsed;
+			packed[suit] = oldPacked;
+		}
+	}
+
+	/**
+	 * Orders the suits of a split from the most cards to the least, keeping
+	 * suits with the same cards in their original order.
+	 *
+	 * @param packed
+	 *            The packed counts of the cards in each suit.
+	 * @return The suits in order.
+	 */
+	private static int[] order(int[] packed) {
+		int[] order = { 0, 1, 2, 3 };
+		for (int i = 1; i < SUITS; i++) {
+			int suit = order[i], j = i;
+			for (; j > 0 && packed[suit] > packed[order[j - 1]]; j--) {
+				order[j] = order[j - 1];
+			}
+			order[j] = suit;
+		}
+		return order;
+	}
+
+	/**
+	 * Finds the index of a split of the cards dealt up to the specified round
+	 * between suits.
+	 *
+	 * @param packed
+	 *            The packed counts of the cards in each suit.
+	 * @param round
+	 *            The last round dealt.
+	 * @return The index of the split.
+	 */
+	private int permutation(int[] packed, int round) {
+		int permutation = 0, multiplier = 1;
+		for (int i = 0; i <= round; i++) {
+			for (int suit = 0, remaining = rounds[i]; suit < SUITS - 1; suit++) {
+				int cards = count(packed[suit], i);
+				permutation += multiplier * cards;
+				multiplier *= remaining + 1;
+				remaining -= cards;
+			}
+		}
+		return permutation;
+	}
+
+	/**
+	 * Obtains the number of cards dealt in a round from a packed count.
+	 *
+	 * @param packed
+	 *            The packed count of cards in a suit.
+	 * @param round
+	 *            The round.
+	 * @return The number of cards dealt in the round.
+	 */
+	private int count(int packed, int round) {
+		return packed >>> ROUND_SHIFT * (rounds.length - round - 1) & ROUND_MASK;
+	}
+
+	/**
+	 * Finds the end of a group of suits with the same configuration.
+	 *
+	 * @param configuration
+	 *            The configuration.
+	 * @param suit
+	 *            The first suit in the group.
+	 * @return The suit after the last suit in the group.
+	 */
+	private static int group(int[] configuration, int suit) {
+		int end = suit + 1;
+		while (end < SUITS && configuration[end] == configuration[suit]) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Converts a configuration to a list so it can be used as a key.
+	 *
+	 * @param configuration
+	 *            The configuration.
+	 * @return The configuration as a list.
+	 */
+	private static List<Integer> list(int[] configuration) {
+		List<Integer> list = new ArrayList<>(SUITS);
+		for (int packed : configuration) {
+			list.add(packed);
+		}
+		return list;
+	}
+
+	/**
+	 * Obtains the number of rounds this indexer indexes.
+	 *
+	 * @return The number of rounds.
+	 */
+	public int rounds() {
+		return rounds.length;
+	}
+
+	/**
+	 * Obtains the number of indices of the specified round, which is the
+	 * number of groups of cards that can be dealt up to and including the
+	 * round that are not a permutation of suits of one another.
+	 *
+	 * @param round
+	 *            The round.
+	 * @return The number of indices of the round.
+	 */
+	public long size(int round) {
+		return sizes[round];
+	}
+
+	/**
+	 * Indexes the specified cards, which must hold every card dealt up to
+	 * and including a round in order of round.
+	 *
+	 * @param cards
+	 *            The index of each card, as given by {@link Card#index()}.
+	 * @return The index of the cards.
+	 */
+	public long index(int... cards) {
+		return index(cards, null);
+	}
+
+	/**
+	 * Finds the number of groups of cards that are a permutation of suits of
+	 * the specified cards, including themselves, which all have the same
+	 * index.
+	 *
+	 * @param cards
+	 *            The index of each card, as given by {@link Card#index()}.
+	 * @return The number of groups of cards with the same index.
+	 */
+	public int multiplicity(int... cards) {
+		int[] multiplicity = new int[1];
+		index(cards, multiplicity);
+		return multiplicity[0];
+	}
+
+	/**
+	 * Indexes the specified cards, finding their multiplicity if requested.
+	 *
+	 * @param cards
+	 *            The index of each card, as given by {@link Card#index()}.
+	 * @param multiplicity
+	 *            An array to store the multiplicity of the cards in, or null.
+	 * @return The index of the cards.
+	 */
+	private long index(int[] cards, int[] multiplicity) {
+		int last = -1;
+		for (int round = 0; round < rounds.length; round++) {
+			if (starts[round] + rounds[round] == cards.length) {
+				last = round;
+			}
+		}
+		if (last < 0) {
+			throw new IllegalArgumentException("Cards must complete a round");
+		}
+
+		/*
+		 * Index the card values of each suit, removing the values used in
+		 * earlier rounds from the values of every round.
+		 */
+		long[] suitIndices = new long[SUITS], suitMultipliers = { 1, 1, 1, 1 };
+		int[] used = new int[SUITS];
+		int permutation = 0, permutationMultiplier = 1;
+		for (int round = 0; round <= last; round++) {
+			int[] values = new int[SUITS], shifted = new int[SUITS];
+			for (int i = starts[round]; i < starts[round] + rounds[round]; i++) {
+				if (cards[i] < 0 || cards[i] >= Constants.DECK_SIZE) {
+					throw new IllegalArgumentException("Invalid card index " + cards[i]);
+				}
+				int suit = cards[i] / VALUES, bit = 1 << cards[i] % VALUES;
+				if (((values[suit] | used[suit]) & bit) != 0) {
+					throw new IllegalArgumentException("Cards cannot be dealt twice");
+				}
+				values[suit] |= bit;
+				shifted[suit] |= bit >>> Integer.bitCount((bit - 1) & used[suit]);
+			}
+			for (int suit = 0; suit < SUITS; suit++) {
+				int count = Integer.bitCount(values[suit]);
+				suitIndices[suit] += suitMultipliers[suit] * SET_INDICES[shifted[suit]];
+				suitMultipliers[suit] *= CHOOSE[VALUES - Integer.bitCount(used[suit])][count];
+				used[suit] |= values[suit];
+			}
+			for (int suit = 0, remaining = rounds[round]; suit < SUITS - 1; suit++) {
+				int count = Integer.bitCount(values[suit]);
+				permutation += permutationMultiplier * count;
+				permutationMultiplier *= remaining + 1;
+				remaining -= count;
+			}
+		}
+
+		/*
+		 * Combine the suits in order, combining suits with the same
+		 * configuration as a multiset by sorting them.
+		 */
+		int id = permutationConfigurations[last][permutation];
+		int[] order = permutationOrders[last][permutation];
+		int[] configuration = configurations[last][id];
+		long index = offsets[last][id], multiplier = 1;
+		int symmetries = 1;
+		for (int suit = 0; suit < SUITS;) {
+			int end = group(configuration, suit);
+			long[] group = new long[end - suit];
+			for (int i = suit; i < end; i++) {
+				group[i - suit] = suitIndices[order[i]];
+			}
+			Arrays.sort(group);
+			long combined = 0;
+			for (int i = 0, run = 1; i < group.length; i++) {
+				combined += combinations(group[i] + i, i + 1);
+				run = i > 0 && group[i] == group[i - 1] ? run + 1 : 1;
+				symmetries *= run;
+			}
+			index += multiplier * combined;
+			multiplier *= multisets(suitSizes[last][id][suit], end - suit);
+			suit = end;
+		}
+		if (multiplicity != null) {
+			multiplicity[0] = PERMUTATIONS / symmetries;
+		}
+		return index;
+	}
+
+	/**
+	 * Finds the cards of the specified index, with suits that have more cards
+	 * in earlier rounds given lower suit ordinals.
+	 *
+	 * @param round
+	 *            The last round dealt.
+	 * @param index
+	 *            The index.
+	 * @return The index of each card dealt up to and including the round, in
+	 *         order of round.
+	 */
+	public int[] unindex(int round, long index) {
+		if (round < 0 || round >= rounds.length || index < 0 || index >= sizes[round]) {
+			throw new IllegalArgumentException("Invalid index " + index + " for round " + round);
+		}
+
+		/*
+		 * Find the configuration of our index.
+		 */
+		int id = Arrays.binarySearch(offsets[round], index);
+		if (id < 0) {
+			id = -id - 2;
+		}
+		int[] configuration = configurations[round][id];
+		index -= offsets[round][id];
+
+		/*
+		 * Split the index into the index of each suit.
+		 */
+		long[] suitIndices = new long[SUITS];
+		for (int suit = 0; suit < SUITS;) {
+			int end = group(configuration, suit);
+			long suitSize = suitSizes[round][id][suit];
+			long size = multisets(suitSize, end - suit);
+			long combined = index % size;
+			index /= size;
+			for (int i = end - suit - 1; i >= 0; i--) {
+				long low = i, high = suitSize + i - 1;
+				while (low < high) {
+					long middle = (low + high + 1) >>> 1;
+					if (combinations(middle, i + 1) <= combined) {
+						low = middle;
+					} else {
+						high = middle - 1;
+					}
+				}
+				combined -= combinations(low, i + 1);
+				suitIndices[suit + i] = low - i;
+			}
+			suit = end;
+		}
+
+		/*
+		 * Find the card values of each suit in every round.
+		 */
+		int[] cards = new int[starts[round] + rounds[round]];
+		int[] locations = starts.clone();
+		for (int suit = 0; suit < SUITS; suit++) {
+			int used = 0;
+			for (int i = 0; i <= round; i++) {
+				int count = count(configuration[suit], i);
+				long size = CHOOSE[VALUES - Integer.bitCount(used)][count];
+				int shifted = INDEXED_SETS[count][(int) (suitIndices[suit] % size)];
+				suitIndices[suit] /= size;
+				int values = 0;
+				for (; shifted != 0; shifted &= shifted - 1) {
+					int value = unset(used, Integer.numberOfTrailingZeros(shifted));
+					values |= 1 << value;
+					cards[locations[i]++] = suit * VALUES + value;
+				}
+				used |= values;
+			}
+		}
+		return cards;
+	}
+
+	/**
+	 * Finds the specified unset bit of a set of card values.
+	 *
+	 * @param used
+	 *            The set of card values.
+	 * @param n
+	 *            The number of unset bits to skip.
+	 * @return The position of the unset bit.
+	 */
+	private static int unset(int used, int n) {
+		int value = 0;
+		for (;; value++) {
+			if ((used & 1 << value) == 0 && n-- == 0) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Finds the number of ways to choose items.
+	 *
+	 * @param n
+	 *            The number of items to choose from.
+	 * @param k
+	 *            The number of items to choose.
+	 * @return The number of ways to choose the items.
+	 */
+	private static long combinations(long n, int k) {
+		if (k > n) {
+			return 0;
+		}
+		long result = 1;
+		for (int i = 1; i <= k; i++) {
+			result = result * (n - k + i) / i;
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the number of ways to choose from a small number of card values.
+	 *
+	 * @param n
+	 *            The number of card values to choose from.
+	 * @param k
+	 *            The number of card values to choose.
+	 * @return The number of ways to choose the card values.
+	 */
+	private static int choose(int n, int k) {
+		return k > n ? 0 : (int) CHOOSE[n][k];
+	}
+
+	/**
+	 * Finds the number of ways to choose items allowing repeats.
+	 *
+	 * @param n
+	 *            The number of items to choose from.
+	 * @param k
+	 *            The number of items to choose.
+	 * @return The number of ways to choose the items.
+	 */
+	private static long multisets(long n, int k) {
+		return combinations(n + k - 1, k);
+	}
+
+	/**
+	 * Finds the canonical index of the specified hand on the specified board.
+	 * Hands on boards of the same size that only differ by a permutation of
+	 * suits have the same index, with the board treated as a single round.
+	 *
+	 * @param hand
+	 *            The hand.
+	 * @param board
+	 *            The board, which may be empty.
+	 * @return The canonical index of the hand on the board.
+	 */
+	public static Canonical canonical(Hand hand, Board board) {
+		int size = board.cards().size();
+		HandIndexer indexer = indexer(HANDS, size, true);
+		int[] cards = indices(hand.cards(), board.cards());
+		int[] multiplicity = new int[1];
+		long index = indexer.index(cards, multiplicity);
+		return new Canonical(indexer, index, multiplicity[0]);
+	}
+
+	/**
+	 * Finds the canonical index of the specified board. Boards of the same
+	 * size that only differ by a permutation of suits have the same index.
+	 *
+	 * @param board
+	 *            The board, which must have at least one card.
+	 * @return The canonical index of the board.
+	 */
+	public static Canonical canonical(Board board) {
+		int size = board.cards().size();
+		if (size == 0) {
+			throw new IllegalArgumentException("Board has no cards to index");
+		}
+		HandIndexer indexer = indexer(BOARDS, size, false);
+		int[] cards = indices(board.cards());
+		int[] multiplicity = new int[1];
+		long index = indexer.index(cards, multiplicity);
+		return new Canonical(indexer, index, multiplicity[0]);
+	}
+
+	/**
+	 * Obtains the shared indexer for hole cards on boards or for boards of
+	 * the specified size, creating it if it doesn't exist yet.
+	 *
+	 * @param indexers
+	 *            The shared indexers.
+	 * @param size
+	 *            The size of the board.
+	 * @param hand
+	 *            Whether hole cards are indexed before the board.
+	 * @return The indexer.
+	 */
+	private static HandIndexer indexer(HandIndexer[] indexers, int size, boolean hand) {
+		if (size > Constants.BOARD_SIZE) {
+			throw new IllegalArgumentException("Too many cards on the board");
+		}
+		synchronized (indexers) {
+			if (indexers[size] == null) {
+				if (!hand) {
+					indexers[size] = new HandIndexer(size);
+				} else if (size == 0) {
+					indexers[size] = new HandIndexer(Constants.HAND_SIZE);
+				} else {
+					indexers[size] = new HandIndexer(Constants.HAND_SIZE, size);
+				}
+			}
+			return indexers[size];
+		}
+	}
+
+	/**
+	 * Finds the index of every card in the specified collections, in order.
+	 *
+	 * @param collections
+	 *            The collections of cards.
+	 * @return The index of every card.
+	 */
+	@SafeVarargs
+	private static int[] indices(Collection<Card>... collections) {
+		int count = 0;
+		for (Collection<Card> cards : collections) {
+			count += cards.size();
+		}
+		int[] indices = new int[count];
+		int i = 0;
+		for (Collection<Card> cards : collections) {
+			for (Card card : cards) {
+				indices[i++] = card.index();
+			}
+		}
+		return indices;
+	}
+
+	/**
+	 * The canonical index of a hand on a board or of a board, which is equal
+	 * to the canonical index of any hand on a board or board that only differs
+	 * by a permutation of suits, and can be used as a key for results that
+	 * don't depend on suits.
+	 */
+	public static class Canonical {
+
+		/* The indexer that created the index. */
+		private final HandIndexer indexer;
+
+		/* The index. */
+		private final long index;
+
+		/* The number of groups of cards with the index. */
+		private final int multiplicity;
+
+		/**
+		 * Constructs a new {@link Canonical}.
+		 *
+		 * @param indexer
+		 *            The indexer that created the index.
+		 * @param index
+		 *            The index.
+		 * @param multiplicity
+		 *            The number of groups of cards with the index.
+		 */
+		private Canonical(HandIndexer indexer, long index, int multiplicity) {
+			this.indexer = indexer;
+			this.index = index;
+			this.multiplicity = multiplicity;
+		}
+
+		/**
+		 * Obtains the index, which is between 0 and {@link #size()}
+		 * exclusive.
+		 *
+		 * @return The index.
+		 */
+		public long index() {
+			return index;
+		}
+
+		/**
+		 * Obtains the number of hands on boards or boards with this index,
+		 * which are all a permutation of suits of one another.
+		 *
+		 * @return The multiplicity of the index.
+		 */
+		public int multiplicity() {
+			return multiplicity;
+		}
+
+		/**
+		 * Obtains the number of indices for hands on boards or boards of the
+		 * same size as the one indexed.
+		 *
+		 * @return The number of indices.
+		 */
+		public long size() {
+			return indexer.size(indexer.rounds() - 1);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Arrays.hashCode(indexer.rounds) + Long.hashCode(index);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Canonical other = (Canonical) obj;
+			return Arrays.equals(indexer.rounds, other.indexer.rounds) && index == other.index;
+		}
+
+		@Override
+		public String toString() {
+			return new StringBuilder().append("[index=").append(index)
+					.append(" multiplicity=").append(multiplicity).append("]").toString();
+		}
+
+	}
+
+}
@@ -227,7 +227,7 @@ public class Range {
 		/*
 		 * Determine whether or not to use a weighted subset of hands.
 		 */
-		double p = Math.random(), c = 0.0;
+		double p = random.nextDouble(), c = 0.0;
 		for (double w : weighted.keySet()) {
 			c += w;
 			if (p <= c) {
@@ -0,0 +1,225 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.eval;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.board.Board;
+
+/**
+ * A hand evaluator that finds the best 5 cards of a hand directly using bit
+ * arithmetic on a 13-bit mask of card values for each suit.
+ *
+ * <p>
+ * Flushes and straights are found from the suit masks with a single small
+ * table, and pairs, trips and quads are found by intersecting the suit masks.
+ * Once the best 5 cards are known they are ranked using the same tables as
+ * {@link DefaultEvaluator}, so ranks are identical to it, but without checking
+ * every 5 card combination or needing a large lookup table.
+ * </p>
+ */
+public class BitmaskEvaluator extends DefaultEvaluator {
+
+	/* A mask containing every card value. */
+	private static final int ALL_VALUES = (1 << Card.LABEL.length) - 1;
+
+	/*
+	 * Contains the prime for each card value, in order of strength from the
+	 * deuce to the ace.
+	 */
+	private static final int[] PRIMES = new int[Card.LABEL.length];
+
+	/*
+	 * Contains the mask of the best straight within every mask of card values
+	 * ordered by strength, or 0 if there is no straight.
+	 */
+	private static final short[] straights = new short[ALL_VALUES + 1];
+
+	static {
+		for (int i = 0; i < PRIMES.length; i++) {
+			PRIMES[i] = CARD_RANKS[(i + 1) % CARD_RANKS.length];
+		}
+
+		/*
+		 * Find the best straight in every mask, where the ace can also be used
+		 * below the deuce.
+		 */
+		final int wheel = (1 << 12) | 0xF;
+		for (int mask = 0; mask <= ALL_VALUES; mask++) {
+			for (int high = 12; high >= 4; high--) {
+				int straight = 0x1F << (high - 4);
+				if ((mask & straight) == straight) {
+					straights[mask] = (short) straight;
+					break;
+				}
+			}
+			if (straights[mask] == 0 && (mask & wheel) == wheel) {
+				straights[mask] = (short) wheel;
+			}
+		}
+	}
+
+	@Override
+	public int rank(long cards) {
+		if (Long.bitCount(cards) < 5) {
+			return DISTINCT_VALUES;
+		}
+
+		/*
+		 * Split our cards into a mask of values per suit.
+		 */
+		int s0 = strength((int) cards & ALL_VALUES);
+		int s1 = strength((int) (cards >>> 13) & ALL_VALUES);
+		int s2 = strength((int) (cards >>> 26) & ALL_VALUES);
+		int s3 = strength((int) (cards >>> 39) & ALL_VALUES);
+
+		/*
+		 * Check for flushes, only one suit can have 5 cards or more.
+		 */
+		int flush = Integer.bitCount(s0) >= 5 ? s0 : Integer.bitCount(s1) >= 5 ? s1
+				: Integer.bitCount(s2) >= 5 ? s2 : Integer.bitCount(s3) >= 5 ? s3 : 0;
+		if (flush != 0) {
+			int straight = straights[flush];
+			return lookup(unstrength(straight != 0 ? straight : top(flush, 5)), 0, true);
+		}
+
+		/*
+		 * Find which values we hold once, twice, three times and four times.
+		 */
+		int all = s0 | s1 | s2 | s3;
+		int twos = (s0 & s1) | (s2 & s3) | ((s0 | s1) & (s2 | s3));
+		int threes = (s0 & s1 & (s2 | s3)) | (s2 & s3 & (s0 | s1));
+		int fours = s0 & s1 & s2 & s3;
+
+		if (fours != 0) {
+			int kicker = top(all & ~fours, 1);
+			return rank(fours, 4, kicker, 1);
+		}
+
+		if (threes != 0) {
+			int trips = top(threes, 1);
+			int pair = top((twos & ~trips), 1);
+			if (pair != 0) {
+				return rank(trips, 3, pair, 2);
+			}
+		}
+
+		int straight = straights[all];
+		if (straight != 0) {
+			return lookup(unstrength(straight), 0, false);
+		}
+
+		if (threes != 0) {
+			int kickers = top(all & ~threes, 2);
+			return rank(threes, 3, kickers, 1);
+		}
+
+		if (twos != 0) {
+			int pairs = top(twos, 2);
+			int kickers = top(all & ~pairs, 5 - 2 * Integer.bitCount(pairs));
+			return rank(pairs, 2, kickers, 1);
+		}
+
+		return lookup(unstrength(top(all, 5)), 0, false);
+	}
+
+	@Override
+	public PreparedBoard prepare(Board board) {
+		return new GenericPreparedBoard(this, board);
+	}
+
+	/**
+	 * Ranks a 5 card hand made up of two groups of card values.
+	 *
+	 * @param a
+	 *            A mask of the values in the first group, ordered by strength.
+	 * @param countA
+	 *            How many cards each value in the first group has.
+	 * @param b
+	 *            A mask of the values in the second group, ordered by strength.
+	 * @param countB
+	 *            How many cards each value in the second group has.
+	 * @return The rank of the hand.
+	 */
+	private static int rank(int a, int countA, int b, int countB) {
+		int product = 1;
+		for (int m = a; m != 0; m &= m - 1) {
+			product *= pow(PRIMES[Integer.numberOfTrailingZeros(m)], countA);
+		}
+		for (int m = b; m != 0; m &= m - 1) {
+			product *= pow(PRIMES[Integer.numberOfTrailingZeros(m)], countB);
+		}
+		return lookup(unstrength(a | b), product, false);
+	}
+
+	/**
+	 * Raises the specified prime to the specified power.
+	 *
+	 * @param prime
+	 *            The prime.
+	 * @param count
+	 *            The power, between 1 and 4.
+	 * @return The prime raised to the power.
+	 */
+	private static int pow(int prime, int count) {
+		int result = prime;
+		for (int i = 1; i < count; i++) {
+			result *= prime;
+		}
+		return result;
+	}
+
+	/**
+	 * Keeps only the specified number of highest values in the specified mask.
+	 *
+	 * @param mask
+	 *            The mask of values, ordered by strength.
+	 * @param count
+	 *            The number of values to keep.
+	 * @return The mask containing only the highest values.
+	 */
+	private static int top(int mask, int count) {
+		while (Integer.bitCount(mask) > count) {
+			mask &= mask - 1;
+		}
+		return mask;
+	}
+
+	/**
+	 * Converts a mask of card values from value order, where the ace is the
+	 * lowest bit, to strength order where the ace is the highest bit.
+	 *
+	 * @param mask
+	 *            The mask in value order.
+	 * @return The mask in strength order.
+	 */
+	private static int strength(int mask) {
+		return (mask >>> 1) | ((mask & 1) << 12);
+	}
+
+	/**
+	 * Converts a mask of card values from strength order back to value order,
+	 * the inverse of {@link #strength(int)}.
+	 *
+	 * @param mask
+	 *            The mask in strength order.
+	 * @return The mask in value order.
+	 */
+	private static int unstrength(int mask) {
+		return ((mask << 1) | (mask >>> 12)) & ALL_VALUES;
+	}
+
+}
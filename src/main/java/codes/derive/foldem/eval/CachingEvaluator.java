@@ -0,0 +1,262 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.eval;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.board.Board;
+
+/**
+ * An {@link Evaluator} that remembers the ranks given by another
+ * {@link Evaluator}, so that ranking the same cards again does not need to
+ * evaluate them.
+ *
+ * <p>
+ * Ranks are cached by the 52-bit mask of the cards being ranked in a fixed
+ * number of slots, each holding a single rank. When a rank is stored in a slot
+ * already holding a different rank the old rank is evicted. The cache does no
+ * locking and can be shared between any number of threads, provided the
+ * wrapped {@link Evaluator} can be.
+ * </p>
+ */
+public class CachingEvaluator implements Evaluator {
+
+	/* The default number of slots in the cache, using 8MB of memory. */
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+
+	/* A mask containing every card in the deck. */
+	private static final long DECK_MASK = (1L << 52) - 1;
+
+	/* The number of bits used to store a rank within a slot. */
+	private static final int RANK_BITS = 13;
+
+	/* The evaluator to rank cards with when they are not cached. */
+	private final Evaluator evaluator;
+
+	/*
+	 * The slots of the cache, each containing part of the mixed card mask and
+	 * the rank plus one, or 0 if the slot is empty.
+	 */
+	private final AtomicLongArray slots;
+
+	/* The number of bits of the mixed card mask used to select a slot. */
+	private final int slotBits;
+
+	/* Counters for the cache statistics. */
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder(),
+			evictions = new LongAdder();
+
+	/**
+	 * Constructs a new {@link CachingEvaluator} with the default capacity.
+	 *
+	 * @param evaluator
+	 *            The evaluator to cache the ranks of.
+	 */
+	public CachingEvaluator(Evaluator evaluator) {
+		this(evaluator, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a new {@link CachingEvaluator}.
+	 *
+	 * @param evaluator
+	 *            The evaluator to cache the ranks of, which must give ranks
+	 *            below 8191.
+	 * @param capacity
+	 *            The number of ranks the cache can hold, which is rounded up
+	 *            to a power of two.
+	 */
+	public CachingEvaluator(Evaluator evaluator, int capacity) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		}
+		this.evaluator = evaluator;
+		this.slotBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(capacity - 1));
+		this.slots = new AtomicLongArray(1 << slotBits);
+	}
+
+	@Override
+	public int rank(Hand h, Board b) {
+		long cards = Card.mask(h.cards()) | Card.mask(b.cards());
+
+		/*
+		 * Hands sharing cards with the board can't be represented by a mask, so
+		 * leave them to the evaluator.
+		 */
+		if (Long.bitCount(cards) != h.cards().size() + b.cards().size()) {
+			return evaluator.rank(h, b);
+		}
+
+		long mixed = mix(cards);
+		int rank = lookup(mixed);
+		if (rank == -1) {
+			rank = store(mixed, evaluator.rank(h, b));
+		}
+		return rank;
+	}
+
+	@Override
+	public int rank(long cards) {
+		long mixed = mix(cards);
+		int rank = lookup(mixed);
+		if (rank == -1) {
+			rank = store(mixed, evaluator.rank(cards));
+		}
+		return rank;
+	}
+
+	@Override
+	public HandValue value(Hand hand, Board board) {
+		return evaluator.value(hand, board);
+	}
+
+	/**
+	 * Obtains the number of ranks that were found in the cache.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Obtains the number of ranks that were not found in the cache and had to
+	 * be evaluated.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Obtains the number of ranks that were removed from the cache to make
+	 * room for others.
+	 *
+	 * @return The number of cache evictions.
+	 */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Obtains the fraction of ranks that were found in the cache.
+	 *
+	 * @return The cache hit rate between 0 and 1, or 0 if nothing has been
+	 *         ranked.
+	 */
+	public double hitRate() {
+		long hits = hits(), total = hits + misses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Obtains the evaluator whose ranks are cached.
+	 *
+	 * @return The wrapped evaluator.
+	 */
+	public Evaluator evaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Obtains the number of ranks the cache can hold.
+	 *
+	 * @return The capacity of the cache.
+	 */
+	public int capacity() {
+		return slots.length();
+	}
+
+	/**
+	 * Removes every rank from the cache and resets its statistics.
+	 */
+	public void clear() {
+		for (int i = 0; i < slots.length(); i++) {
+			slots.set(i, 0L);
+		}
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+
+	/**
+	 * Finds the rank of the specified mixed card mask in the cache.
+	 *
+	 * @param mixed
+	 *            The mixed card mask.
+	 * @return The cached rank, or -1 if it is not cached.
+	 */
+	private int lookup(long mixed) {
+		long slot = slots.get((int) mixed & (slots.length() - 1));
+		if (slot != 0 && slot >>> RANK_BITS == mixed >>> slotBits) {
+			hits.increment();
+			return (int) (slot & ((1 << RANK_BITS) - 1)) - 1;
+		}
+		misses.increment();
+		return -1;
+	}
+
+	/**
+	 * Stores the rank of the specified mixed card mask in the cache.
+	 *
+	 * @param mixed
+	 *            The mixed card mask.
+	 * @param rank
+	 *            The rank of the cards.
+	 * @return The rank of the cards.
+	 */
+	private int store(long mixed, int rank) {
+		if (rank < 0 || rank >= (1 << RANK_BITS) - 1) {
+			throw new IllegalStateException("Rank " + rank + " can't be cached");
+		}
+		long slot = (mixed >>> slotBits) << RANK_BITS | (rank + 1);
+		long evicted = slots.getAndSet((int) mixed & (slots.length() - 1), slot);
+		if (evicted != 0 && evicted != slot) {
+			evictions.increment();
+		}
+		return rank;
+	}
+
+	/**
+	 * Mixes the bits of the specified card mask so that similar masks use
+	 * different slots.
+	 *
+	 * <p>
+	 * Every step can be reversed, so two masks never mix to the same value and
+	 * only the bits not used to select a slot need to be stored in it, leaving
+	 * room for the rank.
+	 * </p>
+	 *
+	 * @param cards
+	 *            The card mask.
+	 * @return The mixed card mask, using the low 52 bits.
+	 */
+	private static long mix(long cards) {
+		if ((cards & ~DECK_MASK) != 0) {
+			throw new IllegalArgumentException("Invalid card mask " + Long.toHexString(cards));
+		}
+		cards ^= cards >>> 26;
+		cards = (cards * 0x9E3779B97F4A7C15L) & DECK_MASK;
+		cards ^= cards >>> 26;
+		return cards;
+	}
+
+}
@@ -16,14 +16,8 @@
  */
 package codes.derive.foldem.eval;
 
-import java.io.DataInputStream;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 import codes.derive.foldem.Card;
+import codes.derive.foldem.Constants;
 import codes.derive.foldem.Hand;
 import codes.derive.foldem.board.Board;
 
@@ -33,11 +27,8 @@ import codes.derive.foldem.board.Board;
  */
 public class DefaultEvaluator implements Evaluator {
 	
-	/* Bitmask for suited 5-card hand hashes. */
-	private static final int SUITED_MASK = 0x80000000;
-	
 	/* The number of possible distinct 5 card hands. */
-	private static final int DISTINCT_VALUES = 7462;
+	static final int DISTINCT_VALUES = 7462;
 	
 	/* Prime value mappings for cards. */
 	private static final int PRIME_DEUCE = 2;
@@ -60,117 +51,256 @@ public class DefaultEvaluator implements Evaluator {
 			PRIME_EIGHT, PRIME_NINE, PRIME_TEN, PRIME_JACK, PRIME_QUEEN,
 			PRIME_KING };
 	
-	/* Contains ranking values mapped to their respective hashes. */
-	private static final Map<Integer, Short> rankings = new HashMap<>();
+	/* Contains the prime value for each card, indexed by Card#index(). */
+	private static final int[] CARD_PRIMES = new int[Constants.DECK_SIZE];
+
+	/* Contains the value bit for each card, indexed by Card#index(). */
+	private static final int[] CARD_BITS = new int[Constants.DECK_SIZE];
+
+	/* Contains the suit ordinal for each card, indexed by Card#index(). */
+	private static final int[] CARD_SUITS = new int[Constants.DECK_SIZE];
+
+	/* The largest number of cards that can be ranked. */
+	private static final int MAX_CARDS = 7;
+
+	/* The number of bits used to pack a card index with other card indices. */
+	private static final int PACKED_BITS = 6;
+
+	/*
+	 * Contains every 5 card combination of 5, 6 and 7 cards indexed by the
+	 * number of cards, each stored as the 5 shifts of its cards within a set
+	 * of packed card indices, in lexicographic order.
+	 */
+	private static final byte[][] COMBINATIONS = new byte[MAX_CARDS + 1][];
+
+	/*
+	 * Contains the number of leading cards each combination shares with the
+	 * one before it, indexed by the number of cards.
+	 */
+	private static final byte[][] SHARED = new byte[MAX_CARDS + 1][];
 
 	static {
-		try (DataInputStream din = new DataInputStream(DefaultEvaluator.class.getResourceAsStream("rank_data"))) {
-			for (short i = 0; i < DISTINCT_VALUES; i++) {
-				rankings.put(din.readInt(), i);
-			}
-			din.close();
-		} catch (IOException e) {
-			throw new RuntimeException("Could not load rank_data resource, "
-					+ "make sure Foldem was built correctly", e);
+		for (int i = 0; i < Constants.DECK_SIZE; i++) {
+			CARD_PRIMES[i] = CARD_RANKS[i % CARD_RANKS.length];
+			CARD_BITS[i] = 1 << (i % CARD_RANKS.length);
+			CARD_SUITS[i] = i / CARD_RANKS.length;
+		}
+		for (int n = 5; n <= MAX_CARDS; n++) {
+			combinations(n);
 		}
 	}
-	
+
 	@Override
 	public int rank(Hand h, Board b) {
-		
-		/*
-		 * Create a list to hold 21 5 card hands created from our 7 card hands.
-		 */
-		List<Card[]> hands = new ArrayList<>(21);
+		long hand = Card.mask(h.cards());
+		long board = Card.mask(b.cards());
+		if ((hand & board) == 0) {
+			return rank(hand | board);
+		}
 
 		/*
-		 * Group our community cards with the cards in our hand to create a base
-		 * combination.
-		 */
-		List<Card> original = new ArrayList<>();
-		original.addAll(h.cards());
-		original.addAll(b.cards());
-		
-		/*
-		 * Initialize two size indicating constants for our k-combination.
-		 */
-		final int n = original.size();
-		final int k = 5;
-		
-		/*
-		 * Initialize our helper array to hold offset information.
+		 * A card shared between the hand and the board can't be represented
+		 * twice in a mask, so rank the cards individually instead.
 		 */
-		int[] bitVector = new int[k + 1];
-		for (int i = 0; i <= k; i++) {
-			bitVector[i] = i;
+		int n = 0;
+		long packed = 0L;
+		for (Card card : h.cards()) {
+			packed |= (long) card.index() << (n++ * PACKED_BITS);
 		}
-		
-		/*
-		 * Begin creating combinations.
-		 */
-		int endIndex = 1;
-		while (!((endIndex == 0 || (k > n)))) {
-			Card[] currentCombination = new Card[k];
-			for (int i = 1; i <= k; i++) {
-				int index = bitVector[i] - 1;
-				currentCombination[i - 1] = original.get(index);
-				
-			}
-			endIndex = k;
-			while (bitVector[endIndex] == n - k + endIndex) {
-				endIndex--;
-				if (endIndex == 0) {
-					break;
-				}
-			}
-			bitVector[endIndex]++;
-			for (int i = endIndex + 1; i <= k; i++) {
-				bitVector[i] = bitVector[i - 1] + 1;
-			}
-			hands.add(currentCombination);
+		for (Card card : b.cards()) {
+			packed |= (long) card.index() << (n++ * PACKED_BITS);
 		}
-		
-		/*
-		 * Find the hand within the combination with the highest rank, which
-		 * translates to the lowest rank number.
-		 */
+		return n < 5 ? DISTINCT_VALUES : rank(packed, n);
+	}
+
+	@Override
+	public int rank(long cards) {
+		int n = Long.bitCount(cards);
+		if (n < 5) {
+			return DISTINCT_VALUES;
+		}
+		if (n > MAX_CARDS) {
+			throw new IllegalArgumentException("Too many cards to rank");
+		}
+		long packed = 0L;
+		for (int i = 0; i < n; i++, cards &= cards - 1) {
+			packed |= (long) Long.numberOfTrailingZeros(cards) << (i * PACKED_BITS);
+		}
+		return rank(packed, n);
+	}
+
+	/**
+	 * Ranks the specified packed card indices by checking every 5 card
+	 * combination of them. Unlike {@link #rank(long)} the same card may appear
+	 * more than once.
+	 * 
+	 * <p>
+	 * The combinations are walked in lexicographic order, so only the cards
+	 * that differ from the previous combination are added again and the value
+	 * masks, prime products and suit checks of the shared leading cards are
+	 * reused. Each case of the switch deliberately falls through to the next
+	 * to add the rest of the combination's cards. Nothing is allocated.
+	 * </p>
+	 * 
+	 * @param packed
+	 *            The indices of the cards to rank, each using 6 bits starting
+	 *            from the lowest bits.
+	 * @param n
+	 *            The number of cards, between 5 and 7.
+	 * @return The rank of the best hand that can be made using the cards.
+	 */
+	@SuppressWarnings("fallthrough")
+	private static int rank(long packed, int n) {
+		byte[] combinations = COMBINATIONS[n];
+		byte[] shared = SHARED[n];
 		int rank = DISTINCT_VALUES;
-		for (Card[] cards : hands) {
-			boolean suited = true;
-			
-			/*
-			 * Find the encoded value of our hand for the lookup table.
-			 */
-			int value = CARD_RANKS[cards[0].getValue()];
-			for (int i = 1; i < cards.length; i++) {
-				value *= CARD_RANKS[cards[i].getValue()];
-				if (!cards[i].getSuit().equals(cards[0].getSuit())) {
-					suited = false;
+		int suit = 0, b1 = 0, b2 = 0, b3 = 0, b4 = 0, p1 = 1, p2 = 1, p3 = 1, p4 = 1;
+		boolean s2 = false, s3 = false, s4 = false;
+		for (int i = 0, j = 0; i < shared.length; i++, j += 5) {
+			int card;
+			switch (shared[i]) {
+			case 0:
+				card = (int) (packed >>> combinations[j]) & 0x3F;
+				suit = CARD_SUITS[card];
+				b1 = CARD_BITS[card];
+				p1 = CARD_PRIMES[card];
+				// fall through
+			case 1:
+				card = (int) (packed >>> combinations[j + 1]) & 0x3F;
+				b2 = b1 | CARD_BITS[card];
+				p2 = p1 * CARD_PRIMES[card];
+				s2 = CARD_SUITS[card] == suit;
+				// fall through
+			case 2:
+				card = (int) (packed >>> combinations[j + 2]) & 0x3F;
+				b3 = b2 | CARD_BITS[card];
+				p3 = p2 * CARD_PRIMES[card];
+				s3 = s2 && CARD_SUITS[card] == suit;
+				// fall through
+			case 3:
+				card = (int) (packed >>> combinations[j + 3]) & 0x3F;
+				b4 = b3 | CARD_BITS[card];
+				p4 = p3 * CARD_PRIMES[card];
+				s4 = s3 && CARD_SUITS[card] == suit;
+				// fall through
+			default:
+				card = (int) (packed >>> combinations[j + 4]) & 0x3F;
+
+				/*
+				 * A repeated card can never make a flush, so only treat the
+				 * hand as suited with 5 distinct values.
+				 */
+				int bits = b4 | CARD_BITS[card];
+				int r = lookup(bits, p4 * CARD_PRIMES[card],
+						s4 && CARD_SUITS[card] == suit && Integer.bitCount(bits) == 5);
+				if (r < rank) {
+					rank = r;
 				}
 			}
-	
-			/*
-			 * If our hand is suited, apply a bit mask to our hand's encoded
-			 * value indicating that it is.
-			 */
-			if (suited) {
-				value |= SUITED_MASK;
+		}
+		return rank;
+	}
+
+	/**
+	 * Builds the table of every 5 card combination of the specified number of
+	 * cards, along with how many leading cards each shares with the
+	 * combination before it.
+	 * 
+	 * @param n
+	 *            The number of cards.
+	 */
+	private static void combinations(int n) {
+		int count = n * (n - 1) * (n - 2) * (n - 3) * (n - 4) / 120;
+		byte[] combinations = new byte[count * 5];
+		byte[] shared = new byte[count];
+		int[] positions = { 0, 1, 2, 3, 4 };
+		for (int i = 0; i < count; i++) {
+			for (int j = 0; j < 5; j++) {
+				combinations[i * 5 + j] = (byte) (positions[j] * PACKED_BITS);
 			}
 
 			/*
-			 * Finally, we obtain our rank from the hash map.
+			 * Advance to the next combination, the cards before the one that
+			 * was advanced are shared with it.
 			 */
-			int r = rankings.get(value);
-			if (r < rank) {
-				rank = r;
+			int j = 4;
+			while (j >= 0 && positions[j] == n - 5 + j) {
+				j--;
+			}
+			if (j < 0) {
+				break;
+			}
+			positions[j]++;
+			for (int k = j + 1; k < 5; k++) {
+				positions[k] = positions[k - 1] + 1;
 			}
+			shared[i + 1] = (byte) j;
 		}
-		return rank;
+		COMBINATIONS[n] = combinations;
+		SHARED[n] = shared;
+	}
+
+	/**
+	 * Finds the rank of a 5 card hand.
+	 * 
+	 * @param bits
+	 *            The mask of the card values in the hand.
+	 * @param product
+	 *            The product of the primes of the card values in the hand.
+	 * @param suited
+	 *            Whether or not every card in the hand has the same suit.
+	 * @return The rank of the hand.
+	 */
+	static int lookup(int bits, int product, boolean suited) {
+		return RankTables.lookup(bits, product, suited);
+	}
+
+	@Override
+	public PreparedBoard prepare(Board board) {
+		return new Prepared(board);
+	}
+
+	@Override
+	public int compare(long a, long b, long board) {
+
+		/*
+		 * On an unpaired board nothing but a straight flush beats a flush, so
+		 * if only one of the hands makes a flush it wins and neither hand
+		 * needs to be ranked.
+		 */
+		int values = 0;
+		long flushSuit = 0L;
+		for (int suit = 0; suit < 4; suit++) {
+			long cardsOfSuit = 0x1FFFL << (suit * CARD_RANKS.length);
+			if (Long.bitCount(board & cardsOfSuit) >= 3) {
+				flushSuit = cardsOfSuit;
+			}
+			values |= (int) ((board & cardsOfSuit) >>> (suit * CARD_RANKS.length));
+		}
+		if (flushSuit != 0 && Integer.bitCount(values) == Long.bitCount(board)
+				&& ((a | b) & board) == 0) {
+			boolean flushA = Long.bitCount((a | board) & flushSuit) >= 5;
+			boolean flushB = Long.bitCount((b | board) & flushSuit) >= 5;
+			if (flushA != flushB) {
+				return flushA ? -1 : 1;
+			}
+		}
+		return Integer.compare(rank(a | board), rank(b | board));
 	}
 
 	@Override
 	public HandValue value(Hand hand, Board board) {
-		int rank = rank(hand, board);
+		return value(rank(hand, board));
+	}
+
+	/**
+	 * Obtains the {@link HandValue} for the specified rank.
+	 * 
+	 * @param rank
+	 *            The rank, as given by this evaluator.
+	 * @return The value of a hand with the specified rank.
+	 */
+	static HandValue value(int rank) {
 		if (rank >= 6185) {
 			return HandValue.HIGH_CARD;  
 		} else if (rank >= 3325) {
@@ -192,4 +322,263 @@ public class DefaultEvaluator implements Evaluator {
 		}
 	}
 
+	/**
+	 * A {@link PreparedBoard} holding the value mask, prime product and suit of
+	 * every 3, 4 and 5 card subset of the board, so that ranking hole cards
+	 * only has to combine them with each subset.
+	 */
+	private class Prepared implements PreparedBoard {
+
+		/* Marks a subset whose cards are not all the same suit. */
+		private static final int MIXED = -1;
+
+		/* The board that was prepared. */
+		private final Board board;
+
+		/* The cards on the board. */
+		private final long mask;
+
+		/* The rank of the board by itself. */
+		private final int rank;
+
+		/* The value masks, prime products and suits of 4 card subsets. */
+		private final int[] bits4, products4, suits4;
+
+		/* The value masks, prime products and suits of 3 card subsets. */
+		private final int[] bits3, products3, suits3;
+
+		/*
+		 * A mask of every card of the only suit that a hand could make a flush
+		 * with, or 0 if no hand can make a flush.
+		 */
+		private final long flushSuit;
+
+		/* The number of cards on the board of the flush suit. */
+		private final int flushCount;
+
+		/*
+		 * Whether or not the board contains a repeated value, without which no
+		 * hand can make a full house or better unless it is a straight flush.
+		 */
+		private final boolean paired;
+
+		/**
+		 * Prepares the specified board.
+		 * 
+		 * @param board
+		 *            The board.
+		 */
+		private Prepared(Board board) {
+			this.board = board;
+			this.mask = Card.mask(board.cards());
+
+			/*
+			 * Find the cards on our board.
+			 */
+			int[] cards = new int[Long.bitCount(mask)];
+			long m = mask;
+			for (int i = 0; i < cards.length; i++, m &= m - 1) {
+				cards[i] = Long.numberOfTrailingZeros(m);
+			}
+			int subsets4 = cards.length >= 4 ? cards.length * (cards.length - 1) * (cards.length - 2) * (cards.length - 3) / 24 : 0;
+			int subsets3 = cards.length >= 3 ? cards.length * (cards.length - 1) * (cards.length - 2) / 6 : 0;
+			bits4 = new int[subsets4];
+			products4 = new int[subsets4];
+			suits4 = new int[subsets4];
+			bits3 = new int[subsets3];
+			products3 = new int[subsets3];
+			suits3 = new int[subsets3];
+
+			/*
+			 * Record every subset of 3 or more cards.
+			 */
+			int rank = DISTINCT_VALUES;
+			int offset4 = 0, offset3 = 0;
+			for (int subset = 0; subset < 1 << cards.length; subset++) {
+				int size = Integer.bitCount(subset);
+				if (size < 3) {
+					continue;
+				}
+				int bits = 0, product = 1, suit = CARD_SUITS[cards[Integer.numberOfTrailingZeros(subset)]];
+				for (int i = 0; i < cards.length; i++) {
+					if ((subset & (1 << i)) != 0) {
+						bits |= CARD_BITS[cards[i]];
+						product *= CARD_PRIMES[cards[i]];
+						if (CARD_SUITS[cards[i]] != suit) {
+							suit = MIXED;
+						}
+					}
+				}
+				if (size == 5) {
+					rank = Math.min(rank, lookup(bits, product, suit != MIXED));
+				} else if (size == 4) {
+					bits4[offset4] = bits;
+					products4[offset4] = product;
+					suits4[offset4++] = suit;
+				} else if (size == 3) {
+					bits3[offset3] = bits;
+					products3[offset3] = product;
+					suits3[offset3++] = suit;
+				}
+			}
+			this.rank = rank;
+
+			/*
+			 * Find the suit that could make a flush, only one suit can have 3 or
+			 * more cards on a board.
+			 */
+			long flushSuit = 0L;
+			int values = 0;
+			for (int suit = 0; suit < 4; suit++) {
+				long cardsOfSuit = 0x1FFFL << (suit * CARD_RANKS.length);
+				if (Long.bitCount(mask & cardsOfSuit) >= 3) {
+					flushSuit = cardsOfSuit;
+				}
+				values |= (int) ((mask & cardsOfSuit) >>> (suit * CARD_RANKS.length));
+			}
+			this.flushSuit = flushSuit;
+			this.flushCount = Long.bitCount(mask & flushSuit);
+			this.paired = Integer.bitCount(values) < cards.length;
+		}
+
+		@Override
+		public Board board() {
+			return board;
+		}
+
+		@Override
+		public int rank(Hand hand) {
+			long cards = Card.mask(hand.cards());
+			if ((cards & mask) != 0) {
+				return DefaultEvaluator.this.rank(hand, board);
+			}
+			return rank(cards);
+		}
+
+		@Override
+		public int rank(long hand) {
+			if (Long.bitCount(hand) != 2 || (hand & mask) != 0) {
+				return DefaultEvaluator.this.rank(hand | mask);
+			}
+			int a = Long.numberOfTrailingZeros(hand);
+			int b = Long.numberOfTrailingZeros(hand & (hand - 1));
+			int rank = this.rank;
+
+			/*
+			 * Combine each of our hole cards with every 4 card subset.
+			 */
+			for (int i = 0; i < bits4.length; i++) {
+				int r = lookup(bits4[i] | CARD_BITS[a], products4[i] * CARD_PRIMES[a], suits4[i] == CARD_SUITS[a]);
+				if (r < rank) {
+					rank = r;
+				}
+				r = lookup(bits4[i] | CARD_BITS[b], products4[i] * CARD_PRIMES[b], suits4[i] == CARD_SUITS[b]);
+				if (r < rank) {
+					rank = r;
+				}
+			}
+
+			/*
+			 * Combine both of our hole cards with every 3 card subset.
+			 */
+			int bits = CARD_BITS[a] | CARD_BITS[b];
+			int product = CARD_PRIMES[a] * CARD_PRIMES[b];
+			int suit = CARD_SUITS[a] == CARD_SUITS[b] ? CARD_SUITS[a] : MIXED - 1;
+			for (int i = 0; i < bits3.length; i++) {
+				int r = lookup(bits3[i] | bits, products3[i] * product, suits3[i] == suit);
+				if (r < rank) {
+					rank = r;
+				}
+			}
+			return rank;
+		}
+
+		@Override
+		public int compare(Hand a, Hand b) {
+			long first = Card.mask(a.cards());
+			long second = Card.mask(b.cards());
+			if (((first | second) & mask) != 0) {
+				return Integer.compare(rank(a), rank(b));
+			}
+
+			/*
+			 * On an unpaired board nothing but a straight flush beats a flush,
+			 * so if only one of the hands makes a flush it wins and neither
+			 * hand needs to be ranked.
+			 */
+			if (flushSuit != 0 && !paired) {
+				boolean flushA = flushCount + Long.bitCount(first & flushSuit) >= 5;
+				boolean flushB = flushCount + Long.bitCount(second & flushSuit) >= 5;
+				if (flushA != flushB) {
+					return flushA ? -1 : 1;
+				}
+			}
+			return Integer.compare(rank(first), rank(second));
+		}
+
+		@Override
+		public void rankAll(Hand[] hands, int[] out) {
+			long[] masks = new long[hands.length];
+			for (int i = 0; i < hands.length; i++) {
+				masks[i] = Card.mask(hands[i].cards());
+			}
+			rankAll(masks, out);
+
+			/*
+			 * Hands sharing a card with the board can't be ranked from their
+			 * mask, so rank them individually.
+			 */
+			for (int i = 0; i < hands.length; i++) {
+				if ((masks[i] & mask) != 0) {
+					out[i] = rank(hands[i]);
+				}
+			}
+		}
+
+		@Override
+		public void rankAll(long[] hands, int[] out) {
+			if (out.length < hands.length) {
+				throw new IllegalArgumentException("Output array is too small");
+			}
+
+			/*
+			 * Copy our subsets to locals so they stay in registers across the
+			 * loop rather than being read through this context every time.
+			 */
+			final long mask = this.mask;
+			final int base = this.rank;
+			final int[] bits4 = this.bits4, products4 = this.products4, suits4 = this.suits4;
+			final int[] bits3 = this.bits3, products3 = this.products3, suits3 = this.suits3;
+			for (int h = 0; h < hands.length; h++) {
+				long hand = hands[h];
+				if (Long.bitCount(hand) != 2 || (hand & mask) != 0) {
+					out[h] = DefaultEvaluator.this.rank(hand | mask);
+					continue;
+				}
+				int a = Long.numberOfTrailingZeros(hand);
+				int b = 63 - Long.numberOfLeadingZeros(hand);
+				int bitsA = CARD_BITS[a], primeA = CARD_PRIMES[a], suitA = CARD_SUITS[a];
+				int bitsB = CARD_BITS[b], primeB = CARD_PRIMES[b], suitB = CARD_SUITS[b];
+				int rank = base;
+				for (int i = 0; i < bits4.length; i++) {
+					rank = Math.min(rank, lookup(bits4[i] | bitsA, products4[i] * primeA, suits4[i] == suitA));
+					rank = Math.min(rank, lookup(bits4[i] | bitsB, products4[i] * primeB, suits4[i] == suitB));
+				}
+				int bits = bitsA | bitsB;
+				int product = primeA * primeB;
+				int suit = suitA == suitB ? suitA : MIXED - 1;
+				for (int i = 0; i < bits3.length; i++) {
+					rank = Math.min(rank, lookup(bits3[i] | bits, products3[i] * product, suits3[i] == suit));
+				}
+				out[h] = rank;
+			}
+		}
+
+		@Override
+		public HandValue value(Hand hand) {
+			return DefaultEvaluator.value(rank(hand));
+		}
+
+	}
+
 }
@@ -16,8 +16,12 @@
  */
 package codes.derive.foldem.eval;
 
+import java.util.Arrays;
+
+import codes.derive.foldem.Card;
 import codes.derive.foldem.Hand;
 import codes.derive.foldem.board.Board;
+import codes.derive.foldem.board.Boards;
 
 /**
  * A type that performs evaluations by returning a rank for a specified
@@ -43,6 +47,143 @@ public interface Evaluator {
 	 */
 	public int rank(Hand h, Board b);
 
+	/**
+	 * Ranks the cards contained within the specified 52-bit mask, where each
+	 * card is represented by the bit at its {@link Card#index()}.
+	 * 
+	 * <p>
+	 * This follows the same contract as {@link Evaluator#rank(Hand, Board)}
+	 * and exists so that callers evaluating large numbers of hands can do so
+	 * without creating any objects. The default implementation converts the
+	 * mask back into a {@link Hand} and {@link Board}, so implementations are
+	 * encouraged to override it.
+	 * </p>
+	 * 
+	 * @param cards
+	 *            A mask containing the cards to rank, as created by
+	 *            {@link Card#mask(java.util.Collection)}.
+	 * @return The rank of the best hand that can be made using the specified
+	 *         cards. Higher numbers = Worse hands.
+	 */
+	public default int rank(long cards) {
+		Card[] all = new Card[Long.bitCount(cards)];
+		for (int i = 0; i < all.length; i++, cards &= cards - 1) {
+			all[i] = Card.fromIndex(Long.numberOfTrailingZeros(cards));
+		}
+		if (all.length < 2) {
+			throw new IllegalArgumentException("Too few cards to rank");
+		}
+		return rank(new Hand(all[0], all[1]), Boards.board(Arrays.copyOfRange(all, 2, all.length)));
+	}
+
+	/**
+	 * Prepares the specified {@link Board} so that many hands can be ranked on
+	 * it, doing any work that only depends on the board once.
+	 * 
+	 * <p>
+	 * The default implementation does no preparation of its own, so
+	 * implementations that can share work between hands on the same board are
+	 * encouraged to override it.
+	 * </p>
+	 * 
+	 * @param board
+	 *            The board to prepare.
+	 * @return A {@link PreparedBoard} that ranks hands on the specified
+	 *         {@link Board} the same way this {@link Evaluator} would.
+	 */
+	public default PreparedBoard prepare(Board board) {
+		return new GenericPreparedBoard(this, board);
+	}
+
+	/**
+	 * Compares two hands on the specified board to find which of them wins.
+	 * 
+	 * <p>
+	 * The default implementation prepares the board once using
+	 * {@link Evaluator#prepare(Board)} and compares both hands on it, so any
+	 * work on the board is shared between them.
+	 * </p>
+	 * 
+	 * @param a
+	 *            The first hand.
+	 * @param b
+	 *            The second hand.
+	 * @param board
+	 *            The board to compare them on.
+	 * @return A negative number if the first hand wins, a positive number if
+	 *         the second hand wins, or 0 if they split.
+	 */
+	public default int compare(Hand a, Hand b, Board board) {
+		return prepare(board).compare(a, b);
+	}
+
+	/**
+	 * Compares the hole cards contained within two masks on the board
+	 * contained within another mask to find which of them wins.
+	 * 
+	 * <p>
+	 * The default implementation ranks both hands using
+	 * {@link Evaluator#rank(long)}.
+	 * </p>
+	 * 
+	 * @param a
+	 *            A mask containing the first hand's hole cards, as created by
+	 *            {@link Card#mask(java.util.Collection)}.
+	 * @param b
+	 *            A mask containing the second hand's hole cards.
+	 * @param board
+	 *            A mask containing the cards on the board.
+	 * @return A negative number if the first hand wins, a positive number if
+	 *         the second hand wins, or 0 if they split.
+	 */
+	public default int compare(long a, long b, long board) {
+		return Integer.compare(rank(a | board), rank(b | board));
+	}
+
+	/**
+	 * Ranks each of the specified hands on the specified board, storing the
+	 * rank of every hand in the specified array at the same offset.
+	 * 
+	 * <p>
+	 * The default implementation prepares the board once using
+	 * {@link Evaluator#prepare(Board)} and ranks every hand against it.
+	 * </p>
+	 * 
+	 * @param hands
+	 *            The hands to rank.
+	 * @param board
+	 *            The board to rank them on.
+	 * @param out
+	 *            The array to store the ranks in, must be at least as long as
+	 *            the array of hands.
+	 */
+	public default void rankAll(Hand[] hands, Board board, int[] out) {
+		prepare(board).rankAll(hands, out);
+	}
+
+	/**
+	 * Ranks each of the hole card masks specified on the specified board,
+	 * storing the rank of every hand in the specified array at the same
+	 * offset.
+	 * 
+	 * <p>
+	 * The default implementation prepares the board once using
+	 * {@link Evaluator#prepare(Board)} and ranks every hand against it.
+	 * </p>
+	 * 
+	 * @param hands
+	 *            Masks containing the hole cards of each hand to rank, as
+	 *            created by {@link Card#mask(java.util.Collection)}.
+	 * @param board
+	 *            The board to rank them on.
+	 * @param out
+	 *            The array to store the ranks in, must be at least as long as
+	 *            the array of hands.
+	 */
+	public default void rankAll(long[] hands, Board board, int[] out) {
+		prepare(board).rankAll(hands, out);
+	}
+
 	/**
 	 * Obtains the value of the specified {@link Hand} on the specified
 	 * {@link Board}.
@@ -0,0 +1,40 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.eval;
+
+/**
+ * Helper class containing functions for working with {@link Evaluator}.
+ */
+public class Evaluators {
+
+	/**
+	 * Loads the tables used by the evaluators shipped with this library.
+	 * 
+	 * <p>
+	 * The tables are otherwise loaded the first time a hand is ranked, so
+	 * applications sensitive to latency can call this when they start to avoid
+	 * paying that cost on their first evaluation. Calling it more than once
+	 * has no effect. The table used by {@link LookupTableEvaluator} is not
+	 * loaded, as it is only loaded when one is constructed.
+	 * </p>
+	 */
+	public static void warmUp() {
+		new DefaultEvaluator().rank(0x1FL);
+		new BitmaskEvaluator().rank(0x1FL);
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.eval;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.board.Board;
+
+/**
+ * A {@link PreparedBoard} for evaluators with no board specific optimizations,
+ * which only saves converting the board to a mask for every hand.
+ */
+class GenericPreparedBoard implements PreparedBoard {
+
+	/* The evaluator that prepared the board. */
+	private final Evaluator evaluator;
+
+	/* The board that was prepared. */
+	private final Board board;
+
+	/* The cards on the board. */
+	private final long mask;
+
+	/**
+	 * Constructs a new {@link GenericPreparedBoard}.
+	 *
+	 * @param evaluator
+	 *            The evaluator to rank hands with.
+	 * @param board
+	 *            The board to prepare.
+	 */
+	GenericPreparedBoard(Evaluator evaluator, Board board) {
+		this.evaluator = evaluator;
+		this.board = board;
+		this.mask = Card.mask(board.cards());
+	}
+
+	@Override
+	public Board board() {
+		return board;
+	}
+
+	@Override
+	public int rank(Hand hand) {
+		return evaluator.rank(hand, board);
+	}
+
+	@Override
+	public int rank(long hand) {
+		return evaluator.rank(hand | mask);
+	}
+
+	@Override
+	public HandValue value(Hand hand) {
+		return evaluator.value(hand, board);
+	}
+
+}
@@ -0,0 +1,571 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.eval;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Constants;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.board.Board;
+
+/**
+ * A hand evaluator that ranks 5, 6 and 7 card hands by walking a directed
+ * graph of precomputed states, using one table read per card.
+ *
+ * <p>
+ * Each state in the graph represents a set of cards where suits that can no
+ * longer make a flush have been discarded, and holds the offset of the next
+ * state for every card that can be added to it. States for 5 and 6 cards also
+ * hold their own rank, and the transitions out of 6 card states hold the rank
+ * of the resulting 7 card hand. Ranks use the same scale as
+ * {@link DefaultEvaluator}.
+ * </p>
+ *
+ * <p>
+ * The table is roughly 130MB, so rather than being built on every start it is
+ * generated once into a versioned file and memory-mapped on every load after
+ * that. The file holds a checksum of the table that is verified on every load,
+ * and a file that cannot be read or does not match its checksum is generated
+ * again. If it cannot be replaced either, a private copy is generated for the
+ * running process instead.
+ * </p>
+ *
+ * <p>
+ * Hands the table cannot rank, such as those with fewer than 5 cards or with
+ * a card shared between the hand and the board, are ranked by
+ * {@link DefaultEvaluator} instead so both evaluators give the same answers.
+ * </p>
+ */
+public class LookupTableEvaluator extends DefaultEvaluator {
+
+	/** The version of the table file format. */
+	public static final int VERSION = 2;
+
+	/** The default location of the table file, within the user's home. */
+	public static final Path DEFAULT_PATH = Paths.get(
+			System.getProperty("user.home"), ".foldem", "foldem-lut-v" + VERSION + ".dat");
+
+	/* Identifies a table file, "FLUT". */
+	private static final int MAGIC = 0x464C5554;
+
+	/* The size of the table file header in bytes. */
+	private static final int HEADER_SIZE = 16;
+
+	/* The number of table entries per state, a rank followed by each card. */
+	private static final int STATE_SIZE = Constants.DECK_SIZE + 1;
+
+	/* The suit used for cards whose suit can no longer make a flush. */
+	private static final int NO_SUIT = 4;
+
+	/* Contains tables that have already been loaded, by path. */
+	private static final Map<Path, IntBuffer> tables = new HashMap<>();
+
+	/* The table this evaluator uses. */
+	private final IntBuffer table;
+
+	/**
+	 * Constructs a new {@link LookupTableEvaluator} using the table file at
+	 * {@link #DEFAULT_PATH}, generating it first if it does not exist.
+	 */
+	public LookupTableEvaluator() {
+		this(DEFAULT_PATH);
+	}
+
+	/**
+	 * Constructs a new {@link LookupTableEvaluator} using the table file at
+	 * the specified path, generating it first if it does not exist, was
+	 * created by a different version or does not match its checksum.
+	 *
+	 * @param path
+	 *            The location of the table file.
+	 */
+	public LookupTableEvaluator(Path path) {
+		try {
+			this.table = load(path.toAbsolutePath());
+		} catch (IOException e) {
+			throw new RuntimeException("Could not load lookup table " + path, e);
+		}
+	}
+
+	@Override
+	public int rank(Hand h, Board b) {
+		long hand = Card.mask(h.cards());
+		long board = Card.mask(b.cards());
+		if ((hand & board) != 0) {
+			return super.rank(h, b);
+		}
+		return rank(hand | board);
+	}
+
+	@Override
+	public int rank(long cards) {
+		int count = Long.bitCount(cards);
+		if (count < 5 || count > 7) {
+			return super.rank(cards);
+		}
+
+		/*
+		 * Walk the graph one card at a time. After 7 cards we're left with the
+		 * rank itself, otherwise the rank is held in the state we finish on.
+		 */
+		int p = 0;
+		for (; cards != 0; cards &= cards - 1) {
+			p = table.get(p + Long.numberOfTrailingZeros(cards) + 1);
+		}
+		return count == 7 ? p : table.get(p);
+	}
+
+	@Override
+	public PreparedBoard prepare(Board board) {
+		int size = board.cards().size();
+		if (size < 3 || size > 5) {
+			return super.prepare(board);
+		}
+		return new Prepared(board);
+	}
+
+	/**
+	 * Loads the table at the specified path, generating it if need be.
+	 *
+	 * @param path
+	 *            The location of the table file.
+	 * @return The table.
+	 * @throws IOException
+	 *             If the table could not be generated.
+	 */
+	private static synchronized IntBuffer load(Path path) throws IOException {
+		IntBuffer table = tables.get(path);
+		if (table != null) {
+			return table;
+		}
+
+		/*
+		 * Generate the table if it isn't usable, writing it to a temporary
+		 * file first so that a partially written table is never loaded.
+		 */
+		try {
+			table = map(path);
+			if (table == null) {
+				Files.createDirectories(path.getParent());
+				Path temp = Files.createTempFile(path.getParent(), "foldem-lut", ".tmp");
+				try {
+					generate(temp);
+					share(temp);
+					Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				} finally {
+					Files.deleteIfExists(temp);
+				}
+				table = map(path);
+			}
+		} catch (IOException e) {
+			table = null;
+		}
+
+		/*
+		 * The file belongs to someone else or can't be trusted, so generate a
+		 * copy only we use. It stays mapped after being deleted.
+		 */
+		if (table == null) {
+			Path temp = Files.createTempFile("foldem-lut", ".tmp");
+			try {
+				generate(temp);
+				table = map(temp);
+			} finally {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e) {
+					temp.toFile().deleteOnExit();
+				}
+			}
+			if (table == null) {
+				throw new IOException("Generated table failed verification");
+			}
+		}
+		tables.put(path, table);
+		return table;
+	}
+
+	/**
+	 * Makes the specified file readable by every user, so a table generated
+	 * by one user can be loaded by others sharing it.
+	 *
+	 * @param path
+	 *            The file.
+	 * @throws IOException
+	 *             If the permissions could not be changed.
+	 */
+	private static void share(Path path) throws IOException {
+		try {
+			Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-r--r--"));
+		} catch (UnsupportedOperationException e) {
+			/*
+			 * Not a POSIX file system, so the default permissions apply.
+			 */
+		}
+	}
+
+	/**
+	 * Maps the table file at the specified path into memory, provided it is a
+	 * complete table created by this version that matches its checksum. The
+	 * mapped contents are checked, so the file can't change between being
+	 * checked and being used.
+	 *
+	 * @param path
+	 *            The location of the table file.
+	 * @return The table, or <code>null</code> if the file does not exist or
+	 *         does not hold a valid table.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	private static IntBuffer map(Path path) throws IOException {
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+		ByteBuffer file;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				return null;
+			}
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION
+				|| file.capacity() != HEADER_SIZE + (long) file.getInt(8) * STATE_SIZE * 4) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		file.position(HEADER_SIZE);
+		crc.update(file);
+		if ((int) crc.getValue() != file.getInt(12)) {
+			return null;
+		}
+		file.position(HEADER_SIZE);
+		return file.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+	}
+
+	/**
+	 * Generates the table, writing it to the specified path.
+	 *
+	 * <p>
+	 * States are identified by a key containing their cards, each encoded as
+	 * <code>value * 5 + suit</code> and sorted, where the suit is
+	 * {@link #NO_SUIT} if the card's suit can no longer make a flush. States
+	 * are written in the order they are found, breadth first, so every state's
+	 * offset is known as soon as it is first reached.
+	 * </p>
+	 *
+	 * @param path
+	 *            The path to write the table to.
+	 * @throws IOException
+	 *             If the table could not be written.
+	 */
+	private static void generate(Path path) throws IOException {
+		DefaultEvaluator evaluator = new DefaultEvaluator();
+
+		/*
+		 * Maps state keys to their ids, starting with the empty state.
+		 */
+		Map<Long, Integer> ids = new HashMap<>();
+		long[] keys = new long[1 << 16];
+		int count = 1;
+		ids.put(0L, 0);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.position(HEADER_SIZE);
+			CRC32 crc = new CRC32();
+			OutputStream out = new CheckedOutputStream(
+					new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 20), crc);
+
+			ByteBuffer row = ByteBuffer.allocate(STATE_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN);
+			for (int id = 0; id < count; id++) {
+				long key = keys[id];
+				int size = size(key);
+
+				/*
+				 * 5 and 6 card states hold their own rank.
+				 */
+				row.clear();
+				row.putInt(size >= 5 ? evaluator.rank(materialize(key)) : 0);
+
+				/*
+				 * Find the next state for each card, or the final rank if the
+				 * next state would have 7 cards.
+				 */
+				for (int card = 0; card < Constants.DECK_SIZE; card++) {
+					long next = add(key, card);
+					if (next == -1) {
+						row.putInt(0);
+					} else if (size + 1 == 7) {
+						row.putInt(evaluator.rank(materialize(next)));
+					} else {
+						Integer nextId = ids.get(next);
+						if (nextId == null) {
+							if (count == keys.length) {
+								keys = Arrays.copyOf(keys, count * 2);
+							}
+							keys[count] = next;
+							ids.put(next, nextId = count++);
+						}
+						row.putInt(nextId * STATE_SIZE);
+					}
+				}
+				out.write(row.array());
+			}
+			out.flush();
+
+			/*
+			 * Now that we know how many states there are and the checksum of
+			 * the table, write the header.
+			 */
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt((int) crc.getValue()).flip();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+		}
+	}
+
+	/**
+	 * Decodes the cards within the specified state key.
+	 *
+	 * @param key
+	 *            The state key.
+	 * @return The encoded cards within the key, in ascending order.
+	 */
+	private static int[] decode(long key) {
+		int[] codes = new int[size(key)];
+		for (int i = 0; i < codes.length; i++, key >>>= 7) {
+			codes[i] = (int) (key & 0x7F) - 1;
+		}
+		return codes;
+	}
+
+	/**
+	 * Obtains the number of cards within the specified state key.
+	 *
+	 * @param key
+	 *            The state key.
+	 * @return The number of cards within the key.
+	 */
+	private static int size(long key) {
+		return (64 - Long.numberOfLeadingZeros(key) + 6) / 7;
+	}
+
+	/**
+	 * Finds the key of the state reached by adding the specified card to the
+	 * specified state.
+	 *
+	 * @param key
+	 *            The state key.
+	 * @param card
+	 *            The index of the card to add.
+	 * @return The key of the next state, or <code>-1</code> if the card can
+	 *         never be added to a hand in the specified state.
+	 */
+	private static long add(long key, int card) {
+		int[] codes = Arrays.copyOf(decode(key), size(key) + 1);
+		int size = codes.length - 1;
+		int value = card % Card.LABEL.length;
+		int suit = card / Card.LABEL.length;
+
+		/*
+		 * Check that the card isn't already held, and whether its suit can
+		 * still make a flush. Before the flop no suit has been discarded yet.
+		 */
+		int sameValue = 0;
+		boolean live = size < 3;
+		for (int i = 0; i < size; i++) {
+			if (codes[i] / 5 == value) {
+				sameValue++;
+			}
+			if (codes[i] % 5 == suit) {
+				live = true;
+			}
+			if (codes[i] == value * 5 + suit) {
+				return -1;
+			}
+		}
+		if (sameValue == 4) {
+			return -1;
+		}
+		codes[size] = value * 5 + (live ? suit : NO_SUIT);
+
+		/*
+		 * Discard any suits that no longer have enough cards remaining to make
+		 * a flush.
+		 */
+		int[] counts = new int[NO_SUIT + 1];
+		for (int code : codes) {
+			counts[code % 5]++;
+		}
+		for (int i = 0; i < codes.length; i++) {
+			int s = codes[i] % 5;
+			if (s != NO_SUIT && counts[s] + 7 - codes.length < 5) {
+				codes[i] = codes[i] - s + NO_SUIT;
+			}
+		}
+
+		/*
+		 * Encode the new key, making sure it can be made from real cards.
+		 */
+		Arrays.sort(codes);
+		long next = 0L;
+		for (int i = codes.length - 1; i >= 0; i--) {
+			next = (next << 7) | (codes[i] + 1);
+		}
+		return materialize(next) == -1 ? -1 : next;
+	}
+
+	/**
+	 * Creates a mask of real cards for the specified state key, giving cards
+	 * without a suit the suits not otherwise used in turn.
+	 *
+	 * @param key
+	 *            The state key.
+	 * @return A mask of cards for the key, or <code>-1</code> if no set of
+	 *         real cards could match it.
+	 */
+	private static long materialize(long key) {
+		int[] codes = decode(key);
+
+		/*
+		 * Find which suits are free to give to cards with no suit.
+		 */
+		boolean[] used = new boolean[NO_SUIT];
+		for (int code : codes) {
+			if (code % 5 != NO_SUIT) {
+				used[code % 5] = true;
+			}
+		}
+		int[] free = new int[NO_SUIT];
+		int frees = 0;
+		for (int s = 0; s < NO_SUIT; s++) {
+			if (!used[s]) {
+				free[frees++] = s;
+			}
+		}
+
+		/*
+		 * Build our mask. Cards without a suit that share a value are next to
+		 * each other, so they are given different suits.
+		 */
+		long mask = 0L;
+		int[] counts = new int[NO_SUIT];
+		int next = 0;
+		for (int code : codes) {
+			int suit = code % 5;
+			if (suit == NO_SUIT) {
+				if (frees == 0) {
+					return -1;
+				}
+				suit = free[next++ % frees];
+				if (++counts[suit] >= 5) {
+					return -1;
+				}
+			}
+			long bit = 1L << (suit * Card.LABEL.length + code / 5);
+			if ((mask & bit) != 0) {
+				return -1;
+			}
+			mask |= bit;
+		}
+		return mask;
+	}
+
+	/**
+	 * A {@link PreparedBoard} holding the table position reached by walking
+	 * the board's cards, so that ranking hole cards only takes two more reads.
+	 */
+	private class Prepared implements PreparedBoard {
+
+		/* The board that was prepared. */
+		private final Board board;
+
+		/* The cards on the board. */
+		private final long mask;
+
+		/* The position in the table after the board's cards. */
+		private final int position;
+
+		/**
+		 * Prepares the specified board.
+		 * 
+		 * @param board
+		 *            The board.
+		 */
+		private Prepared(Board board) {
+			this.board = board;
+			this.mask = Card.mask(board.cards());
+			int p = 0;
+			for (long cards = mask; cards != 0; cards &= cards - 1) {
+				p = table.get(p + Long.numberOfTrailingZeros(cards) + 1);
+			}
+			this.position = p;
+		}
+
+		@Override
+		public Board board() {
+			return board;
+		}
+
+		@Override
+		public int rank(Hand hand) {
+			long cards = Card.mask(hand.cards());
+			if ((cards & mask) != 0) {
+				return LookupTableEvaluator.this.rank(hand, board);
+			}
+			return rank(cards);
+		}
+
+		@Override
+		public int rank(long hand) {
+			if (Long.bitCount(hand) != 2 || (hand & mask) != 0) {
+				return LookupTableEvaluator.this.rank(hand | mask);
+			}
+			int p = table.get(position + Long.numberOfTrailingZeros(hand) + 1);
+			p = table.get(p + 64 - Long.numberOfLeadingZeros(hand));
+			return Long.bitCount(mask) == 5 ? p : table.get(p);
+		}
+
+		@Override
+		public HandValue value(Hand hand) {
+			return DefaultEvaluator.value(rank(hand));
+		}
+
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.eval;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.board.Board;
+
+/**
+ * A {@link Board} that has been prepared by an {@link Evaluator} so that any
+ * number of hands can be ranked on it, doing the work that depends only on the
+ * board once.
+ *
+ * <p>
+ * Instances are obtained through {@link Evaluator#prepare(Board)}, and rank
+ * hands exactly as the {@link Evaluator} that created them would. They hold
+ * no mutable state and can be shared between threads.
+ * </p>
+ */
+public interface PreparedBoard {
+
+	/**
+	 * Obtains the {@link Board} that was prepared.
+	 *
+	 * @return The {@link Board} that was prepared.
+	 */
+	public Board board();
+
+	/**
+	 * Ranks the specified hand on the prepared board.
+	 *
+	 * @param hand
+	 *            The hand to rank.
+	 * @return The rank of the specified {@link Hand} on the prepared
+	 *         {@link Board}, as given by {@link Evaluator#rank(Hand, Board)}.
+	 */
+	public int rank(Hand hand);
+
+	/**
+	 * Ranks the hole cards contained within the specified mask on the prepared
+	 * board.
+	 *
+	 * @param hand
+	 *            A mask containing the hole cards to rank, as created by
+	 *            {@link Card#mask(java.util.Collection)}.
+	 * @return The rank of the specified hole cards on the prepared
+	 *         {@link Board}, as given by {@link Evaluator#rank(long)}.
+	 */
+	public int rank(long hand);
+
+	/**
+	 * Compares two hands on the prepared board to find which of them wins.
+	 * 
+	 * <p>
+	 * The default implementation ranks both hands, implementations that can
+	 * tell which hand wins without ranking both are encouraged to override
+	 * it.
+	 * </p>
+	 * 
+	 * @param a
+	 *            The first hand.
+	 * @param b
+	 *            The second hand.
+	 * @return A negative number if the first hand wins, a positive number if
+	 *         the second hand wins, or 0 if they split.
+	 */
+	public default int compare(Hand a, Hand b) {
+		return Integer.compare(rank(a), rank(b));
+	}
+
+	/**
+	 * Ranks each of the specified hands on the prepared board, storing the
+	 * rank of every hand in the specified array at the same offset.
+	 *
+	 * @param hands
+	 *            The hands to rank.
+	 * @param out
+	 *            The array to store the ranks in, must be at least as long as
+	 *            the array of hands.
+	 */
+	public default void rankAll(Hand[] hands, int[] out) {
+		if (out.length < hands.length) {
+			throw new IllegalArgumentException("Output array is too small");
+		}
+		for (int i = 0; i < hands.length; i++) {
+			out[i] = rank(hands[i]);
+		}
+	}
+
+	/**
+	 * Ranks each of the hole card masks specified on the prepared board,
+	 * storing the rank of every hand in the specified array at the same
+	 * offset.
+	 *
+	 * @param hands
+	 *            Masks containing the hole cards of each hand to rank, as
+	 *            created by {@link Card#mask(java.util.Collection)}.
+	 * @param out
+	 *            The array to store the ranks in, must be at least as long as
+	 *            the array of hands.
+	 */
+	public default void rankAll(long[] hands, int[] out) {
+		if (out.length < hands.length) {
+			throw new IllegalArgumentException("Output array is too small");
+		}
+		for (int i = 0; i < hands.length; i++) {
+			out[i] = rank(hands[i]);
+		}
+	}
+
+	/**
+	 * Obtains the value of the specified hand on the prepared board.
+	 *
+	 * @param hand
+	 *            The hand to find the value of.
+	 * @return The value of the specified {@link Hand} on the prepared
+	 *         {@link Board}.
+	 */
+	public HandValue value(Hand hand);
+
+}
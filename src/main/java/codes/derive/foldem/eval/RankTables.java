@@ -0,0 +1,305 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.eval;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds the tables used by {@link DefaultEvaluator} to rank 5 card hands.
+ * 
+ * <p>
+ * The tables are loaded when this class is first used rather than when an
+ * evaluator is loaded, see {@link Evaluators#warmUp()}. They are read from
+ * the compact rank_tables resource, which contains every table as big-endian
+ * shorts so that it can be loaded with a single bulk read. If it is missing the
+ * tables are built from the rank_data resource instead, and
+ * {@link #main(String...)} can be used to create it.
+ * </p>
+ */
+final class RankTables {
+
+	/* Bitmask for suited 5-card hand hashes. */
+	private static final int SUITED_MASK = 0x80000000;
+
+	/* The number of possible 13-bit card value masks. */
+	private static final int VALUE_MASKS = 1 << 13;
+
+	/* Contains flush ranks indexed by the mask of their card values. */
+	private static final short[] flushes = new short[VALUE_MASKS];
+
+	/*
+	 * Contains ranks for non-flush hands with 5 distinct card values indexed by
+	 * the mask of their card values, or 0 for masks that aren't such a hand.
+	 */
+	private static final short[] uniques = new short[VALUE_MASKS];
+
+	/*
+	 * Hands with a repeated card value are found using a perfect hash of their
+	 * prime product. Products are hashed into a bucket, and each bucket holds
+	 * a displacement chosen so that none of its products collide with another
+	 * product in the table.
+	 */
+	private static final int HASH_BUCKET_BITS = 11;
+	private static final int HASH_SLOT_BITS = 13;
+	private static final int HASH_BUCKET_MULTIPLIER = 0x9E3779B1;
+	private static final int HASH_SLOT_MULTIPLIER = 0x85EBCA6B;
+
+	/* Contains the displacement for each bucket of the perfect hash. */
+	private static final short[] displacements = new short[1 << HASH_BUCKET_BITS];
+
+	/* Contains ranks for hands with a repeated card value, by their slot. */
+	private static final short[] rankings = new short[1 << HASH_SLOT_BITS];
+
+	/* The size of the compact rank_tables resource in bytes. */
+	private static final int TABLES_SIZE = (flushes.length + uniques.length
+			+ displacements.length + rankings.length) * Short.BYTES;
+
+	static {
+		try (InputStream in = RankTables.class.getResourceAsStream("rank_tables")) {
+			if (in == null) {
+				build();
+			} else {
+				read(in);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Could not load rank_tables resource, "
+					+ "make sure Foldem was built correctly", e);
+		}
+	}
+
+	/* No instantiation. */
+	private RankTables() { }
+
+	/**
+	 * Reads the tables from the specified compact rank_tables stream using a
+	 * single bulk read.
+	 * 
+	 * @param in
+	 *            The stream to read from.
+	 * @throws IOException
+	 *             If the tables could not be read.
+	 */
+	private static void read(InputStream in) throws IOException {
+		byte[] data = new byte[TABLES_SIZE];
+		DataInputStream din = new DataInputStream(in);
+		din.readFully(data);
+		if (din.read() != -1) {
+			throw new IOException("Unexpected data after rank tables");
+		}
+		ShortBuffer buffer = ByteBuffer.wrap(data).asShortBuffer();
+		buffer.get(flushes).get(uniques).get(displacements).get(rankings);
+	}
+
+	/**
+	 * Writes the tables to the specified stream in the compact rank_tables
+	 * format.
+	 * 
+	 * @param out
+	 *            The stream to write to.
+	 * @throws IOException
+	 *             If the tables could not be written.
+	 */
+	static void write(DataOutputStream out) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(TABLES_SIZE);
+		buffer.asShortBuffer().put(flushes).put(uniques).put(displacements).put(rankings);
+		out.write(buffer.array());
+	}
+
+	/**
+	 * Builds the tables from the rank_data resource.
+	 * 
+	 * @throws IOException
+	 *             If the rank_data resource could not be read.
+	 */
+	static void build() throws IOException {
+		Arrays.fill(flushes, (short) 0);
+		Arrays.fill(uniques, (short) 0);
+		Arrays.fill(displacements, (short) 0);
+		Arrays.fill(rankings, (short) 0);
+
+		/*
+		 * Read our hashes. Flushes and hands with 5 distinct values can be
+		 * identified by the mask of their card values alone, so they are
+		 * placed in direct tables. The remaining hashes are packed with their
+		 * rank and placed in a perfect hash table.
+		 */
+		long[] packed = new long[DefaultEvaluator.DISTINCT_VALUES];
+		int count = 0;
+		try (DataInputStream din = new DataInputStream(RankTables.class.getResourceAsStream("rank_data"))) {
+			for (short i = 0; i < DefaultEvaluator.DISTINCT_VALUES; i++) {
+				int hash = din.readInt();
+				int product = hash & ~SUITED_MASK;
+
+				/*
+				 * Find the values in our hand, and whether any are repeated.
+				 */
+				int bits = 0, unique = 1;
+				for (int value = 0; value < DefaultEvaluator.CARD_RANKS.length; value++) {
+					if (product % DefaultEvaluator.CARD_RANKS[value] == 0) {
+						bits |= 1 << value;
+						unique *= DefaultEvaluator.CARD_RANKS[value];
+					}
+				}
+
+				if (hash != product) {
+					flushes[bits] = i;
+				} else if (unique == product) {
+					uniques[bits] = i;
+				} else {
+					packed[count++] = ((long) product << 16) | i;
+				}
+			}
+		}
+		hash(Arrays.copyOf(packed, count));
+	}
+
+	/**
+	 * Builds the perfect hash table for hands with a repeated card value.
+	 * 
+	 * @param packed
+	 *            The prime product of each hand packed with its rank.
+	 */
+	private static void hash(long[] packed) {
+
+		/*
+		 * Group our products by bucket.
+		 */
+		List<List<Long>> buckets = new ArrayList<>();
+		for (int i = 0; i < displacements.length; i++) {
+			buckets.add(new ArrayList<>());
+		}
+		for (long p : packed) {
+			buckets.get(bucket((int) (p >> 16))).add(p);
+		}
+
+		/*
+		 * Place the largest buckets first, trying each displacement until one
+		 * is found where every product in the bucket lands in an empty slot.
+		 */
+		Integer[] order = new Integer[displacements.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+		boolean[] used = new boolean[rankings.length];
+		for (int b : order) {
+			List<Long> bucket = buckets.get(b);
+			if (bucket.isEmpty()) {
+				break;
+			}
+			int displacement = -1;
+			search: for (int d = 0; d < rankings.length; d++) {
+				int[] slots = new int[bucket.size()];
+				for (int i = 0; i < slots.length; i++) {
+					slots[i] = slot((int) (bucket.get(i) >> 16), d);
+					if (used[slots[i]]) {
+						continue search;
+					}
+					for (int j = 0; j < i; j++) {
+						if (slots[j] == slots[i]) {
+							continue search;
+						}
+					}
+				}
+				for (int i = 0; i < slots.length; i++) {
+					used[slots[i]] = true;
+					rankings[slots[i]] = (short) (long) bucket.get(i);
+				}
+				displacement = d;
+				break;
+			}
+			if (displacement == -1) {
+				throw new IllegalStateException("Could not build rank hash table");
+			}
+			displacements[b] = (short) displacement;
+		}
+	}
+
+	/**
+	 * Finds the perfect hash bucket for the specified prime product.
+	 * 
+	 * @param product
+	 *            The prime product.
+	 * @return The bucket for the product.
+	 */
+	private static int bucket(int product) {
+		return (product * HASH_BUCKET_MULTIPLIER) >>> (32 - HASH_BUCKET_BITS);
+	}
+
+	/**
+	 * Finds the perfect hash slot for the specified prime product using the
+	 * specified displacement.
+	 * 
+	 * @param product
+	 *            The prime product.
+	 * @param displacement
+	 *            The displacement of the product's bucket.
+	 * @return The slot for the product.
+	 */
+	private static int slot(int product, int displacement) {
+		return ((product ^ displacement) * HASH_SLOT_MULTIPLIER) >>> (32 - HASH_SLOT_BITS);
+	}
+	
+	/**
+	 * Finds the rank of a 5 card hand.
+	 * 
+	 * @param bits
+	 *            The mask of the card values in the hand.
+	 * @param product
+	 *            The product of the primes of the card values in the hand.
+	 * @param suited
+	 *            Whether or not every card in the hand has the same suit.
+	 * @return The rank of the hand.
+	 */
+	static int lookup(int bits, int product, boolean suited) {
+		if (suited) {
+			return flushes[bits];
+		}
+		int rank = uniques[bits];
+		if (rank != 0) {
+			return rank;
+		}
+		return rankings[slot(product, displacements[bucket(product)])];
+	}
+
+	/**
+	 * Builds the tables from the rank_data resource and writes them to the
+	 * specified file in the compact rank_tables format.
+	 * 
+	 * @param args
+	 *            The path of the file to write.
+	 * @throws IOException
+	 *             If the tables could not be built or written.
+	 */
+	public static void main(String... args) throws IOException {
+		build();
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(Paths.get(args[0])))) {
+			write(out);
+		}
+	}
+
+}
@@ -17,7 +17,7 @@
 /**
  * Defines classes for evaluating Hold'em hands.
  * 
- * The {@link codes.derive.foldem.eval.Evaluator} interface is the crux of this package. You can find the main evaluator shipped with this library {@link codes.derive.foldem.eval.DefaultEvaluator}.
+ * The {@link codes.derive.foldem.eval.Evaluator} interface is the crux of this package. You can find the main evaluator shipped with this library {@link codes.derive.foldem.eval.DefaultEvaluator}, a faster evaluator backed by a large precomputed table in {@link codes.derive.foldem.eval.LookupTableEvaluator}, and {@link codes.derive.foldem.eval.CachingEvaluator} which can wrap any evaluator to remember the ranks it gives.
  * 
  */
 package codes.derive.foldem.eval;
\ No newline at end of file
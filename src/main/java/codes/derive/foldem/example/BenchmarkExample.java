@@ -1,24 +1,32 @@
 package codes.derive.foldem.example;
 
+import codes.derive.foldem.eval.BitmaskEvaluator;
 import codes.derive.foldem.eval.DefaultEvaluator;
+import codes.derive.foldem.eval.Evaluator;
 import codes.derive.foldem.tool.EvaluationBenchmarker;
 
 /**
- * An example that benchmarks the default evaluator on a single thread.
+ * An example that benchmarks the evaluators on a single thread.
  */
 public class BenchmarkExample {
 
 	public static void main(String... args) {
+		Evaluator[] evaluators = { new DefaultEvaluator(), new BitmaskEvaluator() };
+		for (Evaluator evaluator : evaluators) {
+			String name = evaluator.getClass().getSimpleName();
 
-		// Create a new benchmarker with the default evaluator, performing
-		EvaluationBenchmarker benchmarker = new EvaluationBenchmarker(new DefaultEvaluator(), 10000000);
+			// Create a benchmark for hands and boards, and another for card
+			// masks, performing 10 million evaluations each.
+			EvaluationBenchmarker hands = new EvaluationBenchmarker(evaluator, 10000000);
+			EvaluationBenchmarker masks = new EvaluationBenchmarker(evaluator, 10000000, true);
 
-		// Create a benchmark, printing it to stdout.
-		try {
-			double rate = benchmarker.call();
-			System.out.println("Benchmark performed " + rate + " evaluations/second");
-		} catch (Exception e) {
-			System.err.println("Benchmark failed: " + e.getMessage());
+			// Run the benchmarks, printing them to stdout.
+			try {
+				System.out.println(name + " performed " + hands.call() + " evaluations/second");
+				System.out.println(name + " performed " + masks.call() + " mask evaluations/second");
+			} catch (Exception e) {
+				System.err.println("Benchmark failed: " + e.getMessage());
+			}
 		}
 	}
 
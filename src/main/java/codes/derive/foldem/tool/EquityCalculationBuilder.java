@@ -22,32 +22,59 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.stream.IntStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import codes.derive.foldem.Card;
-import codes.derive.foldem.Deck;
+import codes.derive.foldem.Constants;
 import codes.derive.foldem.Hand;
 import codes.derive.foldem.Range;
+import codes.derive.foldem.Suit;
 import codes.derive.foldem.board.Board;
 import codes.derive.foldem.board.Boards;
 import codes.derive.foldem.board.Street;
+import codes.derive.foldem.eval.CachingEvaluator;
 import codes.derive.foldem.eval.DefaultEvaluator;
 import codes.derive.foldem.eval.Evaluator;
 
 /**
  * A type that can be used to calculate equity for hands and ranges using Monte
- * Carlo simulations.
+ * Carlo simulations, or for hands by exhaustive enumeration of every board.
  */
 public class EquityCalculationBuilder {
 
 	/* The default sample size to use for simulations. */
 	public static final int DEFAULT_SAMPLE_SIZE = 25000;
 
+	/* The default maximum sample size when simulating to a target error. */
+	public static final int DEFAULT_MAXIMUM_SAMPLE_SIZE = 1000000;
+
+	/* The number of samples simulated together using the same seed. */
+	private static final int BLOCK_SIZE = 1024;
+
+	/* The number of blocks simulated between checks of the standard error. */
+	private static final int BATCH_BLOCKS = 8;
+
+	/*
+	 * The counters kept for each hand or range: wins, losses and splits, the
+	 * total share of the pot won and the total of its squares.
+	 */
+	private static final int WIN = 0, LOSE = 1, SPLIT = 2, SHARE = 3, SQUARES = 4, COUNTERS = 5;
+
 	/* The default evaluator to use for simulations. */
 	public static final Evaluator DEFAULT_EVALUATOR = new DefaultEvaluator();
 
@@ -63,51 +90,110 @@ public class EquityCalculationBuilder {
 	/* The evaluator to use for simulations. */
 	private Evaluator evaluator = DEFAULT_EVALUATOR;
 
+	/* Whether to enumerate every board rather than simulating boards. */
+	private boolean exhaustive = false;
+
+	/* Whether to record the results of hands on each street. */
+	private boolean streets = false;
+
+	/* The seed to use for simulations, or null to use a hash of the input. */
+	private Long seed = null;
+
+	/* The standard error to simulate to, or 0 to use the sample size. */
+	private double targetStandardError = 0.0;
+
+	/* The most boards to simulate when simulating to a standard error. */
+	private int maximumSampleSize = DEFAULT_MAXIMUM_SAMPLE_SIZE;
+
+	/* The listener to send estimates to during simulations, or null. */
+	private EquityListener listener = null;
+
+	/* The boards to simulate between estimates, or 0 to use a time. */
+	private int listenerSamples = 0;
+
+	/* The nanoseconds to wait between estimates, or 0 to use boards. */
+	private long listenerNanos = 0;
+
+	/* The executor to run calculations on, or null to use fork/join pools. */
+	private ExecutorService executor = null;
+
+	/* The nanoseconds simulations may run for, or 0 for no deadline. */
+	private long timeout = 0;
+
+	/* The future of an asynchronous calculation, set only on its copy. */
+	private CompletableFuture<?> pending = null;
+
+	/* The time an asynchronous calculation was requested at. */
+	private long requested = 0;
+
 	/**
 	 * Performs an equity calculation for the specified hands and returns a map
 	 * containing each hand mapped to its calculated equity.
 	 * 
+	 * <p>
+	 * The exact equity of two hands with no board and no dead cards is looked
+	 * up in the {@link PreflopEquityTable} shipped with Fold'em when using a
+	 * {@link DefaultEvaluator}, or a {@link CachingEvaluator} wrapping one. A
+	 * lookup is exact and immediate, so the sample size, seed and deadline
+	 * have no effect on it. The table is not used when a listener is set, so
+	 * that the listener is sent estimates from a simulation as usual.
+	 * </p>
+	 * 
 	 * @param hands
 	 *            The hands to calculate equity for.
 	 * @return A map containing the specified hands mapped to their calculated
 	 *         equity.
 	 */
 	public Map<Hand, Equity> calculate(Hand... hands) {
+		PreflopEquityTable table = PreflopEquityTable.shipped();
+		if (hands.length == 2 && board.cards().isEmpty() && dead.isEmpty()
+				&& ranksAsDefault(evaluator) && table != null && !streets && listener == null) {
+			return lookup(table, hands);
+		}
+		if (exhaustive || streets) {
+			return enumerate(hands);
+		}
 
 		/*
-		 * Create a base map containing our input hands mapped to their
-		 * equities.
-		 */
-		Map<Hand, Equity> equities = createBaseEquityMap(hands);
-
-		/*
-		 * We should create a Random context for deck shuffling that uses a hash
-		 * of our input for seeding. This allows for output continuity between
-		 * calculations.
-		 */
-		Random random = new Random(Arrays.hashCode(hands));
-
-		/*
-		 * Run our simulations.
+		 * Seed our simulations using a hash of our input unless a seed was
+		 * specified. This allows for output continuity between calculations.
 		 */
-		IntStream.range(0, sampleSize).parallel().forEach((i) -> {
-			simulate(equities, random);
-		});
+		long[] masks = masks(hands);
+		return simulate(hands, masks, null, seed != null ? seed : Arrays.hashCode(hands));
+	}
 
-		/*
-		 * Now just call complete() on all of our generated equities to convert
-		 * them to the correct decimal format, and we're done.
-		 */
-		for (Equity equity : equities.values()) {
-			equity.complete();
-		}
-		return equities;
+	/**
+	 * Performs an equity calculation for the specified hands in the
+	 * background, on our executor if one was set and on the common
+	 * {@link ForkJoinPool} otherwise. The calculation uses the settings of
+	 * this builder at the time of the call, so the builder may be changed or
+	 * reused while it runs.
+	 * 
+	 * <p>
+	 * Cancelling the returned future stops the calculation.
+	 * </p>
+	 * 
+	 * @param hands
+	 *            The hands to calculate equity for.
+	 * @return A future completed with a map containing the specified hands
+	 *         mapped to their calculated equity.
+	 * @see #calculate(Hand...)
+	 */
+	public CompletableFuture<Map<Hand, Equity>> calculateAsync(Hand... hands) {
+		Hand[] copied = hands.clone();
+		return async(builder -> builder.calculate(copied));
 	}
 
 	/**
 	 * Performs an equity calculation for the specified ranges and returns a map
 	 * containing each range mapped to its calculated equity.
 	 * 
+	 * <p>
+	 * When enumerating exhaustively, the exact equity of two ranges on a
+	 * complete board is found with a {@link RiverShowdown} rather than by
+	 * comparing every pair of hands.
+	 * </p>
+	 * 
 	 * @param ranges
 	 *            The ranges to calculate equity for.
 	 * @return A map containing the specified ranges mapped to their calculated
@@ -186,90 +272,261 @@ public class EquityCalculationBuilder {
 		}
 
 		/*
-		 * Create a base map containing our input ranges mapped to their
-		 * equities.
+		 * Heads up on the river we can sweep through our ranges by rank, and
+		 * otherwise we can enumerate every pair of hands in them exactly.
 		 */
-		Map<Range, Equity> equities = createBaseEquityMap(ranges);
+		if (exhaustive && ranges.length == 2) {
+			if (board.cards().size() == Constants.BOARD_SIZE) {
+				return showdown(ranges[0], ranges[1]);
+			}
+			return enumerate(ranges[0], ranges[1]);
+		}
 
 		/*
-		 * Create a Random context for deck shuffling that uses a hash of our
-		 * input for seeding. This allows for output continuity between
-		 * calculations.
+		 * Run our simulations, seeded using a hash of our input unless a seed
+		 * was specified.
 		 */
-		Random random = new Random(Arrays.hashCode(ranges));
+		JointRangeSampler sampler = new JointRangeSampler(ranges, dealt());
+		return simulate(ranges, null, sampler, seed != null ? seed : Arrays.hashCode(ranges));
+	}
+
+	/**
+	 * Performs an equity calculation for the specified ranges in the
+	 * background, on our executor if one was set and on the common
+	 * {@link ForkJoinPool} otherwise. The calculation uses the settings of
+	 * this builder at the time of the call, so the builder may be changed or
+	 * reused while it runs.
+	 * 
+	 * <p>
+	 * Cancelling the returned future stops the calculation.
+	 * </p>
+	 * 
+	 * @param ranges
+	 *            The ranges to calculate equity for.
+	 * @return A future completed with a map containing the specified ranges
+	 *         mapped to their calculated equity.
+	 * @see #calculate(Range...)
+	 */
+	public CompletableFuture<Map<Range, Equity>> calculateAsync(Range... ranges) {
+		Range[] copied = ranges.clone();
+		return async(builder -> builder.calculate(copied));
+	}
+
+	/**
+	 * Calculates the equity of the specified hand against every hand in the
+	 * specified range separately, in a single pass over the boards rather
+	 * than one calculation per hand. Each board is dealt once and the hand is
+	 * ranked on it once, then compared against every hand in the range that
+	 * does not share a card with it. Weights are not used, as each hand in
+	 * the range is calculated on its own.
+	 * 
+	 * <p>
+	 * Every board is evaluated when enumerating exhaustively or when there
+	 * are no more boards left to deal than the sample size, such as on the
+	 * flop. Otherwise the sample size is simulated in full using the seed if
+	 * one was specified, and each hand in the range is evaluated on the
+	 * boards that do not contain its cards.
+	 * </p>
+	 * 
+	 * <p>
+	 * The vector is always calculated in full. Any listener or deadline set
+	 * on this builder is ignored, as they only apply to
+	 * {@link #calculate(Hand...)} and {@link #calculate(Range...)}.
+	 * </p>
+	 * 
+	 * @param hero
+	 *            The hand to calculate equity for.
+	 * @param villain
+	 *            The range containing the hands to calculate equity against.
+	 * @return The equity of the hand against each hand in the range.
+	 */
+	public EquityVector calculateVector(Hand hero, Range villain) {
+		long hand = Card.mask(hero.cards());
+		long dealt = dealt();
+		if ((hand & dealt) != 0) {
+			throw new IllegalArgumentException("The hand contains a card that is on the board or dead");
+		}
 
 		/*
-		 * Run our simulations.
+		 * Find the hands in the range that can be dealt against ours, in order
+		 * of their index.
 		 */
-		IntStream.range(0, sampleSize).parallel().forEach((i) -> {
-			
-			/*
-			 * First we should sample our hands from our ranges, making sure
-			 * there are no collisions. We'll map them to their respective
-			 * equities.
-			 */
-			Map<Hand, Equity> hands = new HashMap<>();
-			while (hands.size() < equities.size()) {
-				for (Range range : ranges) {
-					Hand sampled = range.sample(random);
-					
-					/*
-					 * If there are any collisions we cannot use the hand.
-					 */
-					boolean collision = false;
-					for (Hand hand : hands.keySet()) {
-						
-						/*
-						 * Check for collisions with dead cards.
-						 */
-						for (Card card : dead) {
-							if (hand.cards().contains(card)) {
-								collision = true;
-								break;
-							}
-						}
-						
-						/*
-						 * Check for collisions with other hands.
-						 */
-						if (!Collections.disjoint(hand.cards(), sampled.cards())) {
-							collision = true;
-							break;
-						}
-						
-						/*
-						 * Check for a collision with the board.
-						 */
-						if (!Collections.disjoint(board.cards(), hand.cards())) {
-							collision = true;
-							break;
-						}
-					}
-					
-					/*
-					 * If there was no collision we can our sampled hand to the map.
-					 */
-					if (!collision) {
-						hands.put(sampled, equities.get(range));
-					}
-				}
+		boolean[] included = new boolean[Constants.HAND_COMBINATIONS];
+		for (Hand h : villain.all()) {
+			if ((Card.mask(h.cards()) & (hand | dealt)) == 0) {
+				included[h.index()] = true;
 			}
-			
-			
-			/*
-			 * Run the simulation.
-			 */
-			simulate(hands, random);
-		});
-		
+		}
+		int[] indices = new int[Constants.HAND_COMBINATIONS];
+		int count = 0;
+		for (int i = 0; i < included.length; i++) {
+			if (included[i]) {
+				indices[count++] = i;
+			}
+		}
+		if (count == 0) {
+			throw new IllegalArgumentException("The range does not have any hands that can be dealt against the hand");
+		}
+		long[] masks = new long[count];
+		for (int i = 0; i < count; i++) {
+			masks[i] = Card.mask(Hand.fromIndex(indices[i]).cards());
+		}
+
+		int[] deck = deck(hand | dealt);
+		int needed = Constants.BOARD_SIZE - board.cards().size();
+		long cards = Card.mask(board.cards());
+		boolean exact = exhaustive || binomial(deck.length, needed) <= samples();
+		double[] counts;
+		if (exact) {
+			counts = run(new Versus(hand, masks, cards, deck, needed, null, 0, needed == 0 ? 1 : deck.length - needed + 1));
+		} else {
+			long[] seeds = seeds(seed != null ? seed : 31 * hero.hashCode() + villain.hashCode());
+			counts = run(new Versus(hand, masks, cards, deck, needed, seeds, 0, seeds.length));
+		}
+
+		EquityVector vector = new EquityVector(hero, exact);
+		for (int i = 0; i < count; i++) {
+			int offset = i * COUNTERS;
+			long samples = (long) (counts[offset + WIN] + counts[offset + LOSE] + counts[offset + SPLIT]);
+			if (samples > 0) {
+				vector.set(indices[i], counts[offset + SHARE] / samples, exact ? 0.0 : standardError(counts, i),
+						samples);
+			}
+		}
+		return vector;
+	}
+
+	/**
+	 * Calculates the equity of every hand in the specified range against the
+	 * specified opposing range, giving the distribution of the range's
+	 * equity. Each board is dealt once for every hand, with each hand in
+	 * either range ranked on it once before the hands are compared, and the
+	 * boards are split between processors. Opposing hands are weighted by
+	 * their weight in the opposing range and hands sharing a card are never
+	 * compared.
+	 * 
+	 * <p>
+	 * As with {@link #calculateVector(Hand, Range)}, every board is evaluated
+	 * when enumerating exhaustively or when there are no more boards left to
+	 * deal than the sample size, and the sample size is simulated otherwise.
+	 * Every hand in both ranges is compared on each board, so simulations are
+	 * best kept to small ranges or small sample sizes. As with a vector, any
+	 * listener or deadline is ignored and the distribution is always
+	 * calculated in full.
+	 * </p>
+	 * 
+	 * @param range
+	 *            The range to calculate the equity distribution of.
+	 * @param opponent
+	 *            The range to calculate equity against.
+	 * @return The equity of every hand in the range, sorted.
+	 */
+	public EquityDistribution calculateDistribution(Range range, Range opponent) {
+		long dealt = dealt();
+		List<Hand> hands = dealable(range, dealt), opposing = dealable(opponent, dealt);
+		if (hands.isEmpty() || opposing.isEmpty()) {
+			throw new IllegalArgumentException("A provided range does not have any hands that can be dealt");
+		}
+		long[] ours = new long[hands.size()], theirs = new long[opposing.size()];
+		double[] weights = new double[theirs.length];
+		for (int i = 0; i < ours.length; i++) {
+			ours[i] = Card.mask(hands.get(i).cards());
+		}
+		for (int i = 0; i < theirs.length; i++) {
+			theirs[i] = Card.mask(opposing.get(i).cards());
+			weights[i] = opponent.weight(opposing.get(i));
+		}
+
+		int[] deck = deck(dealt);
+		int needed = Constants.BOARD_SIZE - board.cards().size();
+		long cards = Card.mask(board.cards());
+		boolean exact = exhaustive || binomial(deck.length, needed) <= samples();
+		double[] counts;
+		if (exact) {
+			counts = run(new Distribution(ours, theirs, weights, cards, deck, needed, null, 0,
+					needed == 0 ? 1 : deck.length - needed + 1));
+		} else {
+			long[] seeds = seeds(seed != null ? seed : 31 * range.hashCode() + opponent.hashCode());
+			counts = run(new Distribution(ours, theirs, weights, cards, deck, needed, seeds, 0, seeds.length));
+		}
+
 		/*
-		 * Now just call complete() on all of our generated equities to convert
-		 * them to the correct decimal format, and we're done.
+		 * Hands that every opposing hand shares a card with have no equity.
 		 */
-		for (Equity equity : equities.values()) {
-			equity.complete();
+		List<Hand> calculated = new ArrayList<>();
+		double[] equities = new double[ours.length], factors = new double[ours.length];
+		for (int i = 0; i < ours.length; i++) {
+			if (counts[i * 2 + 1] > 0) {
+				equities[calculated.size()] = counts[i * 2] / counts[i * 2 + 1];
+				factors[calculated.size()] = range.weight(hands.get(i));
+				calculated.add(hands.get(i));
+			}
 		}
-		return equities;
+		return new EquityDistribution(calculated.toArray(new Hand[0]), Arrays.copyOf(equities, calculated.size()),
+				Arrays.copyOf(factors, calculated.size()), exact);
+	}
+
+	/**
+	 * Calculates the exact equity of every hand against every other hand on
+	 * our board, so that the equity of any two ranges on it can be found from
+	 * the returned matrix without dealing another board. The dead cards are
+	 * removed from the deck, and the work is split between processors.
+	 * 
+	 * <p>
+	 * Every runout of the board is dealt once and every hand that can be
+	 * dealt on it is ranked once, before each pair of hands is compared. On a
+	 * flop this compares around 700,000 pairs of hands on each of over 1,000
+	 * runouts, so the board must have at least three cards. The matrix is
+	 * exact and always calculated in full, so any listener, deadline or
+	 * sample size is ignored.
+	 * </p>
+	 * 
+	 * @return The equity of every hand against every other hand on the
+	 *         board.
+	 */
+	public EquityMatrix calculateMatrix() {
+		if (board.cards().size() < Street.FLOP.cardCount()) {
+			throw new IllegalArgumentException("The board must have at least three cards");
+		}
+		long dealt = dealt();
+		int[] live = new int[Constants.HAND_COMBINATIONS];
+		long[] masks = new long[live.length];
+		int count = 0;
+		for (int i = 0; i < live.length; i++) {
+			long mask = Card.mask(Hand.fromIndex(i).cards());
+			if ((mask & dealt) == 0) {
+				live[count] = i;
+				masks[count++] = mask;
+			}
+		}
+		live = Arrays.copyOf(live, count);
+		masks = Arrays.copyOf(masks, count);
+
+		/*
+		 * Deal every runout up front so they can be split evenly.
+		 */
+		int[] deck = deck(dealt);
+		int needed = Constants.BOARD_SIZE - board.cards().size();
+		long[] runouts = new long[(int) binomial(deck.length, needed)];
+		long cards = Card.mask(board.cards());
+		int runout = 0;
+		if (needed == 0) {
+			runouts[runout++] = cards;
+		} else if (needed == 1) {
+			for (int card : deck) {
+				runouts[runout++] = cards | (1L << card);
+			}
+		} else {
+			for (int i = 0; i < deck.length; i++) {
+				for (int j = i + 1; j < deck.length; j++) {
+					runouts[runout++] = cards | (1L << deck[i]) | (1L << deck[j]);
+				}
+			}
+		}
+
+		int units = Math.min(runouts.length, parallelism());
+		double[] shares = run(new Showdowns(masks, runouts, units, 0, units));
+		return new EquityMatrix(board, dealt, live, shares, binomial(deck.length - 2 * Constants.HAND_SIZE, needed));
 	}
 
 	/**
@@ -282,10 +539,235 @@ public class EquityCalculationBuilder {
 	 * @return The {@link EquityCalculationBuilder} instance, for chaining.
 	 */
 	public EquityCalculationBuilder useSampleSize(int sampleSize) {
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException("Sample size must be positive");
+		}
 		this.sampleSize = sampleSize;
 		return this;
 	}
 
+	/**
+	 * Makes the calculator simulate boards until the standard error of every
+	 * equity is at most the specified value, rather than simulating a fixed
+	 * number of boards.
+	 * 
+	 * <p>
+	 * Boards are simulated in batches, checking the standard error of each
+	 * equity after every batch, so lopsided calculations finish sooner than
+	 * close ones. No more than the specified maximum number of boards are
+	 * simulated, even if the target has not been reached. The standard error
+	 * reached is available from {@link Equity#standardError()}.
+	 * </p>
+	 * 
+	 * @param standardError
+	 *            The target standard error of each equity, as a decimal.
+	 * @param maximumSampleSize
+	 *            The most boards to simulate.
+	 * @return The {@link EquityCalculationBuilder} instance, for chaining.
+	 */
+	public EquityCalculationBuilder useTargetStandardError(double standardError, int maximumSampleSize) {
+		if (!(standardError > 0.0)) {
+			throw new IllegalArgumentException("Standard error must be positive");
+		}
+		if (maximumSampleSize < 1) {
+			throw new IllegalArgumentException("Sample size must be positive");
+		}
+		this.targetStandardError = standardError;
+		this.maximumSampleSize = maximumSampleSize;
+		return this;
+	}
+
+	/**
+	 * Makes the calculator simulate boards until the standard error of every
+	 * equity is at most the specified value, simulating no more than
+	 * {@link EquityCalculationBuilder#DEFAULT_MAXIMUM_SAMPLE_SIZE} boards.
+	 * 
+	 * @param standardError
+	 *            The target standard error of each equity, as a decimal.
+	 * @return The {@link EquityCalculationBuilder} instance, for chaining.
+	 * @see #useTargetStandardError(double, int)
+	 */
+	public EquityCalculationBuilder useTargetStandardError(double standardError) {
+		return useTargetStandardError(standardError, DEFAULT_MAXIMUM_SAMPLE_SIZE);
+	}
+
+	/**
+	 * Makes the calculator send estimates of every equity to the specified
+	 * listener each time the specified number of boards have been simulated,
+	 * so that results can be shown before a simulation finishes. The listener
+	 * can stop the simulation early, in which case its last estimates are
+	 * returned.
+	 * 
+	 * <p>
+	 * Boards are simulated in blocks of 1024 boards, so the interval is
+	 * rounded up to a whole number of blocks. Exact calculations, such as
+	 * exhaustive enumerations, are not sent to the listener, and only
+	 * {@link #calculate(Hand...)} and {@link #calculate(Range...)} send
+	 * estimates at all.
+	 * </p>
+	 * 
+	 * @param listener
+	 *            The listener to send estimates to.
+	 * @param interval
+	 *            The number of boards to simulate between estimates.
+	 * @return The {@link EquityCalculationBuilder} instance, for chaining.
+	 */
+	public EquityCalculationBuilder useListener(EquityListener listener, int interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Interval must be positive");
+		}
+		this.listener = listener;
+		this.listenerSamples = interval;
+		this.listenerNanos = 0;
+		return this;
+	}
+
+	/**
+	 * Makes the calculator send estimates of every equity to the specified
+	 * listener each time the specified amount of time has passed, so that
+	 * results can be shown before a simulation finishes. The listener can
+	 * stop the simulation early, in which case its last estimates are
+	 * returned.
+	 * 
+	 * <p>
+	 * The time is checked after each batch of one block of 1024 boards for
+	 * every processor, so estimates may arrive a little later than the
+	 * interval. Exact calculations, such as exhaustive enumerations, are not
+	 * sent to the listener, and neither are vectors, distributions or
+	 * matrices.
+	 * </p>
+	 * 
+	 * @param listener
+	 *            The listener to send estimates to.
+	 * @param interval
+	 *            The time between estimates.
+	 * @param unit
+	 *            The unit of the time between estimates.
+	 * @return The {@link EquityCalculationBuilder} instance, for chaining.
+	 */
+	public EquityCalculationBuilder useListener(EquityListener listener, long interval, TimeUnit unit) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Interval must be positive");
+		}
+		this.listener = listener;
+		this.listenerSamples = 0;
+		this.listenerNanos = unit.toNanos(interval);
+		return this;
+	}
+
+	/**
+	 * Makes the calculator run its work on the specified executor rather than
+	 * on the common {@link ForkJoinPool}, so calculations can be kept apart
+	 * from other work using the common pool.
+	 * 
+	 * <p>
+	 * Work is split into tasks for every block of 1024 boards, or every first
+	 * card or pair of hands when enumerating. Given a {@link ForkJoinPool} the
+	 * tasks are split and stolen as usual, and given any other executor one
+	 * task is submitted for each unit of work, with the calling thread running
+	 * any that have not been started by the time it needs their results.
+	 * Results are combined in the same order either way, so they do not
+	 * depend on the executor.
+	 * </p>
+	 * 
+	 * @param executor
+	 *            The executor to run calculations on, or null to use the
+	 *            common {@link ForkJoinPool}.
+	 * @return The {@link EquityCalculationBuilder} instance, for chaining.
+	 */
+	public EquityCalculationBuilder useExecutor(ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Gives simulations a deadline, after which they return the best estimate
+	 * from the boards simulated so far, flagged as {@link Equity#partial()}.
+	 * The deadline is measured from the call to calculate the equities, or
+	 * to {@link #calculateAsync(Hand...)}, so time spent waiting for the
+	 * executor counts towards it.
+	 * 
+	 * <p>
+	 * The deadline is checked before each block of 1024 boards, and the first
+	 * block is always simulated so there is an estimate to return. Exact
+	 * calculations, such as exhaustive enumerations, are not affected by the
+	 * deadline, and neither are {@link #calculateVector(Hand, Range)},
+	 * {@link #calculateDistribution(Range, Range)} and
+	 * {@link #calculateMatrix()}.
+	 * </p>
+	 * 
+	 * @param timeout
+	 *            The time simulations may run for.
+	 * @param unit
+	 *            The unit of the time simulations may run for.
+	 * @return The {@link EquityCalculationBuilder} instance, for chaining.
+	 */
+	public EquityCalculationBuilder useDeadline(long timeout, TimeUnit unit) {
+		if (timeout < 1) {
+			throw new IllegalArgumentException("Deadline must be positive");
+		}
+		this.timeout = unit.toNanos(timeout);
+		return this;
+	}
+
+	/**
+	 * Sets the seed used to generate the random boards and hands for
+	 * simulations. Calculations using the same seed and inputs give identical
+	 * results, regardless of how many processors they run on. By default the
+	 * seed is a hash of the hands or ranges being calculated.
+	 * 
+	 * @param seed
+	 *            The seed to use for simulations.
+	 * @return The {@link EquityCalculationBuilder} instance, for chaining.
+	 */
+	public EquityCalculationBuilder useSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Makes the calculator enumerate every possible board for equity
+	 * calculations on hands, and every pair of hands for calculations on two
+	 * ranges, rather than simulating a sample of boards, giving exact results.
+	 * The sample size is not used for these calculations, and calculations on
+	 * more than two ranges are still simulated.
+	 * 
+	 * <p>
+	 * Every board that can be dealt without the cards in the hands, the dead
+	 * cards and the set board is evaluated, with the work split across all
+	 * available processors. With no set board this is over 1.7 million boards
+	 * for two hands, so it is considerably slower than the default simulation.
+	 * </p>
+	 * 
+	 * @return The {@link EquityCalculationBuilder} instance, for chaining.
+	 */
+	public EquityCalculationBuilder useExhaustiveEnumeration() {
+		this.exhaustive = true;
+		return this;
+	}
+
+	/**
+	 * Makes the calculator record how often each hand is ahead, behind or
+	 * tied on the flop and turn as well as at showdown, available from
+	 * {@link Equity#win(Street)} and related methods. Calculations on hands
+	 * are enumerated exhaustively in this mode, and calculations on ranges
+	 * are not affected.
+	 * 
+	 * <p>
+	 * Boards are dealt one card at a time in the order of the deck, so every
+	 * flop and turn is reached once on the way to the rivers that complete
+	 * it. Hands are compared on each of them as they are reached, which costs
+	 * little more than the enumeration of the rivers alone. The street of
+	 * the set board is included once, and earlier streets are not recorded.
+	 * </p>
+	 * 
+	 * @return The {@link EquityCalculationBuilder} instance, for chaining.
+	 */
+	public EquityCalculationBuilder useStreetBreakdown() {
+		this.streets = true;
+		return this;
+	}
+
 	/**
 	 * Sets the {@link Evaluator} to be used to evaluate hand values during
 	 * simulations. By default this value is specified by
@@ -328,110 +810,1642 @@ public class EquityCalculationBuilder {
 	}
 
 	/**
-	 * Creates a map containing empty equities as values mapped to the entries
-	 * of the specified array.
+	 * Checks whether the specified evaluator is known to rank hands exactly
+	 * as {@link DefaultEvaluator} does, so that ranks and equities computed
+	 * with the default evaluator ahead of time can be used in its place.
+	 * Subclasses may rank hands differently, so only the classes themselves
+	 * are trusted.
 	 * 
-	 * @param data
-	 *            The array whose contents should be used as keys for equities.
-	 * 
-	 * @return A map containing the contents of the array mapped to new
-	 *         equities.
+	 * @param evaluator
+	 *            The evaluator.
+	 * @return <code>true</code> if the evaluator is a {@link DefaultEvaluator}
+	 *         or a {@link CachingEvaluator} wrapping one, otherwise
+	 *         <code>false</code>.
 	 */
-	private <T> Map<T, Equity> createBaseEquityMap(T[] data) {
-		HashMap<T, Equity> equities = new HashMap<>();
-		for (T t : data) {
-			equities.put(t, new Equity());
+	static boolean ranksAsDefault(Evaluator evaluator) {
+		if (evaluator.getClass() == CachingEvaluator.class) {
+			return ranksAsDefault(((CachingEvaluator) evaluator).evaluator());
 		}
-		return equities;
+		return evaluator.getClass() == DefaultEvaluator.class;
 	}
 
 	/**
-	 * Simulates a river and evaluates each of the specified hands on it. The
-	 * result will be applied to each hand's respective equity.
+	 * Looks up the exact preflop equity of two hands in the specified table.
 	 * 
-	 * @param equities The hands mapped to their respective equities.
+	 * @param table
+	 *            The table to look up the hands in.
+	 * @param hands
+	 *            The hands to look up.
+	 * @return A map containing the specified hands mapped to their exact
+	 *         equity.
+	 */
+	private Map<Hand, Equity> lookup(PreflopEquityTable table, Hand... hands) {
+		long[] masks = masks(hands);
+		int[] found = table.counts(masks[0], masks[1]);
+		int wins = found[0], splits = found[1], losses = PreflopEquityTable.BOARDS - wins - splits;
+
+		double[] counts = new double[2 * COUNTERS];
+		for (int i = 0; i < 2; i++) {
+			int offset = i * COUNTERS;
+			counts[offset + WIN] = i == 0 ? wins : losses;
+			counts[offset + LOSE] = i == 0 ? losses : wins;
+			counts[offset + SPLIT] = splits;
+			counts[offset + SHARE] = counts[offset + WIN] + splits / 2.0;
+			counts[offset + SQUARES] = counts[offset + WIN] + splits / 4.0;
+		}
+		return complete(hands, counts, true);
+	}
+
+	/**
+	 * Calculates the exact equity of the specified hands by evaluating them on
+	 * every board that can be dealt.
 	 * 
-	 * @param random The {@link java.util.Random } context to use to shuffle the
-	 * deck.
+	 * @param hands
+	 *            The hands to calculate equity for.
+	 * @return A map containing the specified hands mapped to their exact
+	 *         equity.
 	 */
-	private void simulate(Map<Hand, Equity> equities, Random random) {
+	private Map<Hand, Equity> enumerate(Hand... hands) {
 
-		/*
-		 * Create a randomized deck.
-		 */
-		Deck deck = deck().shuffle(random);
+		long[] masks = masks(hands);
+		long used = dealt();
+		for (long mask : masks) {
+			used |= mask;
+		}
 
 		/*
-		 * Deal out the hands being used during the simulation, as well as our
-		 * dead cards.
+		 * Find the cards left in the deck to deal our boards from.
 		 */
-		for (Hand hand : equities.keySet()) {
-			deck.pop(hand);
-		}
-		for (Card card : dead) {
-			deck.pop(card);
+		int[] deck = deck(used);
+		int needed = Constants.BOARD_SIZE - board.cards().size();
+		if (needed > deck.length) {
+			throw new IllegalArgumentException("Not enough cards left in the deck to deal a board");
 		}
-		for (Card card : this.board.cards()) {
-			deck.pop(card);
-		}
-		
+
 		/*
-		 * Generate a random river using our shuffled deck for our hands to be
-		 * evaluated on.
+		 * Enumerate every board, counting how many each hand won, lost and
+		 * split.
 		 */
-		Board board = Boards.convert(this.board, Street.RIVER, deck);
+		double[] counts = run(new Enumeration(masks, Card.mask(board.cards()), deck, needed, streets, 0,
+				needed == 0 ? 1 : streets ? deck.length : deck.length - needed + 1));
+		Map<Hand, Equity> equities = complete(hands, Arrays.copyOf(counts, hands.length * COUNTERS), true);
 
 		/*
-		 * Evaluate our input hands our newly created board to it to see who the
-		 * winners were.
+		 * The flop and turn counters follow those of the river.
 		 */
-		List<Hand> best = new LinkedList<>();
-		int currentBest = Integer.MAX_VALUE;
-		for (Hand hand : equities.keySet()) {
-
-			// see if this hand is the best one so far
-			int rank = evaluator.rank(hand, board);
-			if (rank < currentBest) {
+		if (streets) {
+			for (int i = 0; i < hands.length; i++) {
+				double[] results = new double[6];
+				for (int street = 0; street < 2; street++) {
+					int offset = ((street + 1) * hands.length + i) * COUNTERS;
+					double total = counts[offset + WIN] + counts[offset + LOSE] + counts[offset + SPLIT];
+					for (int result = WIN; result <= SPLIT; result++) {
+						results[street * 3 + result] = total == 0 ? Double.NaN : counts[offset + result] / total;
+					}
+				}
+				equities.get(hands[i]).streets = results;
+			}
+		}
+		return equities;
+	}
 
-				// clear the previous best hands and add this one
-				best.clear();
-				best.add(hand);
+	/**
+	 * Calculates the exact equity of two ranges against each other by
+	 * evaluating every pair of their hands that don't have a card in common on
+	 * every board that can be dealt, weighting each pair by the product of the
+	 * weights of its hands.
+	 * 
+	 * <p>
+	 * Pairs of hands that are the same after exchanging suits that the board
+	 * and the dead cards are unaffected by have the same equity, so only one
+	 * pair of each such group is evaluated.
+	 * </p>
+	 * 
+	 * <p>
+	 * The number of samples is the number of boards times the weighted number
+	 * of pairs, counting each group once for every pair in it.
+	 * </p>
+	 * 
+	 * @param first
+	 *            The first range.
+	 * @param second
+	 *            The second range.
+	 * @return A map containing the specified ranges mapped to their exact
+	 *         equity.
+	 */
+	private Map<Range, Equity> enumerate(Range first, Range second) {
+		long dealt = dealt();
+		long board = Card.mask(this.board.cards());
+		int[][] symmetries = symmetries(board, Card.mask(dead));
 
-				// update our current best ranking
-				currentBest = rank;
-			} else if (rank == currentBest) {
-				best.add(hand);
+		/*
+		 * Group every usable pair of hands by the first of the pairs it can be
+		 * turned into by exchanging suits, adding up the weights of each group.
+		 */
+		Map<Integer, double[]> weights = new LinkedHashMap<>();
+		List<Hand> opposing = dealable(second, dealt);
+		for (Hand a : dealable(first, dealt)) {
+			long maskA = Card.mask(a.cards());
+			for (Hand b : opposing) {
+				long maskB = Card.mask(b.cards());
+				if ((maskA & maskB) != 0) {
+					continue;
+				}
+				int key = Integer.MAX_VALUE;
+				for (int[] symmetry : symmetries) {
+					key = Math.min(key, key(exchange(maskA, symmetry), exchange(maskB, symmetry)));
+				}
+				double[] weight = weights.get(key);
+				if (weight == null) {
+					weights.put(key, weight = new double[1]);
+				}
+				weight[0] += first.weight(a) * second.weight(b);
 			}
 		}
+		if (weights.isEmpty()) {
+			throw new IllegalArgumentException("These ranges have no hands that can be used together");
+		}
 
 		/*
-		 * Finally, apply our evaluation results to the sample.
+		 * Enumerate each group, weighting its results.
 		 */
-		for (Hand hand : equities.keySet()) {
-			if (!best.contains(hand)) {
-				equities.get(hand).lose += 1;
-			}
+		int[] keys = new int[weights.size()];
+		double[] factors = new double[keys.length];
+		double pairs = 0.0;
+		int offset = 0;
+		for (Map.Entry<Integer, double[]> entry : weights.entrySet()) {
+			keys[offset] = entry.getKey();
+			pairs += factors[offset++] = entry.getValue()[0];
 		}
-		if (best.size() > 1) {
-			for (Hand hand : best) {
-				equities.get(hand).split += 1;
-			}
-		} else {
-			equities.get(best.get(0)).win += 1;
+		double[] counts = run(new Matchups(keys, factors, board, dealt, 0, keys.length));
+
+		Map<Range, Equity> equities = complete(new Range[] { first, second }, counts, true);
+		int needed = Constants.BOARD_SIZE - this.board.cards().size();
+		long boards = binomial(Constants.DECK_SIZE - Long.bitCount(dealt) - 4, needed);
+		for (Equity equity : equities.values()) {
+			equity.samples = Math.round(boards * pairs);
 		}
+		return equities;
 	}
 
 	/**
-	 * Represents a hand's equity against one or more other hands.
+	 * Calculates the exact equity of two ranges against each other on our
+	 * complete board using a {@link RiverShowdown}, weighting each pair of
+	 * hands by the product of their weights. As with
+	 * {@link #enumerate(Range, Range)} the number of samples is the weighted
+	 * number of pairs, on the one board.
+	 * 
+	 * @param first
+	 *            The first range.
+	 * @param second
+	 *            The second range.
+	 * @return A map containing the specified ranges mapped to their exact
+	 *         equity.
 	 */
-	public class Equity {
-
-		/*
-		 * Win, loss, and split decimals. These will not be set to their correct
-		 * values until right at the very end of calculation, after a call to
-		 * complete().
-		 */
-		private double win = 0.0, lose = 0.0, split = 0.0;
+	private Map<Range, Equity> showdown(Range first, Range second) {
+		long dead = Card.mask(this.dead);
+		double[] ours = EquityMatrix.weights(first), theirs = EquityMatrix.weights(second);
+		for (int i = 0; i < Constants.HAND_COMBINATIONS; i++) {
+			if ((Card.mask(Hand.fromIndex(i).cards()) & dead) != 0) {
+				ours[i] = 0;
+				theirs[i] = 0;
+			}
+		}
+		double[] results = new RiverShowdown(board, evaluator).results(ours, theirs);
+		double total = results[0] + results[1] + results[2];
+		if (results[3] == 0 || total == 0) {
+			throw new IllegalArgumentException("These ranges have no hands that can be used together");
+		}
+
+		Map<Range, Equity> equities = new HashMap<>();
+		Range[] ranges = { first, second };
+		for (int i = 0; i < ranges.length; i++) {
+			Equity equity = new Equity();
+			equity.win = results[i] / total;
+			equity.lose = results[1 - i] / total;
+			equity.split = results[2] / total;
+			equity.equity = equity.win + equity.split / 2;
+			equity.samples = Math.round(total);
+			equities.put(ranges[i], equity);
+		}
+		return equities;
+	}
+
+	/**
+	 * Finds every exchange of suits that leaves the specified board and dead
+	 * cards unchanged.
+	 * 
+	 * @param board
+	 *            The cards on the board.
+	 * @param dead
+	 *            The dead cards.
+	 * @return Every such exchange, each given as the suit that each suit is
+	 *         exchanged with.
+	 */
+	private static int[][] symmetries(long board, long dead) {
+		List<int[]> symmetries = new ArrayList<>();
+		int suits = Suit.values().length;
+		for (int a = 0; a < suits; a++) {
+			for (int b = 0; b < suits; b++) {
+				for (int c = 0; c < suits; c++) {
+					int d = 6 - a - b - c;
+					if (a == b || a == c || b == c || d < 0 || d >= suits || d == a || d == b || d == c) {
+						continue;
+					}
+					int[] symmetry = { a, b, c, d };
+					if (exchange(board, symmetry) == board && exchange(dead, symmetry) == dead) {
+						symmetries.add(symmetry);
+					}
+				}
+			}
+		}
+		return symmetries.toArray(new int[0][]);
+	}
+
+	/**
+	 * Exchanges the suits of the cards in the specified mask.
+	 * 
+	 * @param cards
+	 *            The cards.
+	 * @param symmetry
+	 *            The suit that each suit is exchanged with.
+	 * @return The cards after exchanging their suits.
+	 */
+	private static long exchange(long cards, int[] symmetry) {
+		long exchanged = 0L;
+		for (int suit = 0; suit < symmetry.length; suit++) {
+			exchanged |= ((cards >>> (suit * Card.LABEL.length)) & 0x1FFFL) << (symmetry[suit] * Card.LABEL.length);
+		}
+		return exchanged;
+	}
+
+	/**
+	 * Packs a pair of hands into a key, using 6 bits for each card.
+	 * 
+	 * @param a
+	 *            The cards in the first hand.
+	 * @param b
+	 *            The cards in the second hand.
+	 * @return The key for the pair of hands.
+	 */
+	private static int key(long a, long b) {
+		return Long.numberOfTrailingZeros(a) << 18 | (63 - Long.numberOfLeadingZeros(a)) << 12
+				| Long.numberOfTrailingZeros(b) << 6 | (63 - Long.numberOfLeadingZeros(b));
+	}
+
+	/**
+	 * Unpacks the cards of a hand from a key created by {@link #key(long, long)}.
+	 * 
+	 * @param key
+	 *            The key.
+	 * @param shift
+	 *            The shift of the hand within the key, 12 for the first hand
+	 *            or 0 for the second.
+	 * @return The cards in the hand.
+	 */
+	private static long hand(int key, int shift) {
+		return 1L << ((key >>> (shift + 6)) & 0x3F) | 1L << ((key >>> shift) & 0x3F);
+	}
+
+	/**
+	 * Calculates the number of ways to choose k items from n.
+	 * 
+	 * @param n
+	 *            The number of items.
+	 * @param k
+	 *            The number to choose.
+	 * @return The number of combinations.
+	 */
+	private static long binomial(int n, int k) {
+		long result = 1;
+		for (int i = 1; i <= k; i++) {
+			result = result * (n - k + i) / i;
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the hands in the specified range that do not contain any of the
+	 * specified cards, leaving out any defined more than once.
+	 * 
+	 * @param range
+	 *            The range.
+	 * @param dealt
+	 *            A mask containing the cards that cannot be in any hand.
+	 * @return The hands that can be dealt, in the order of the range.
+	 */
+	private static List<Hand> dealable(Range range, long dealt) {
+		boolean[] found = new boolean[Constants.HAND_COMBINATIONS];
+		List<Hand> hands = new ArrayList<>();
+		for (Hand hand : range.all()) {
+			if ((Card.mask(hand.cards()) & dealt) == 0 && !found[hand.index()]) {
+				found[hand.index()] = true;
+				hands.add(hand);
+			}
+		}
+		return hands;
+	}
+
+	/**
+	 * Finds the cards in each of the specified hands, making sure none of them
+	 * are used more than once or are on the board or dead.
+	 * 
+	 * @param hands
+	 *            The hands.
+	 * @return A mask containing the cards in each hand.
+	 */
+	private long[] masks(Hand[] hands) {
+		long[] masks = new long[hands.length];
+		long used = dealt();
+		for (int i = 0; i < hands.length; i++) {
+			masks[i] = Card.mask(hands[i].cards());
+			if ((masks[i] & used) != 0 || Long.bitCount(masks[i]) != hands[i].cards().size()) {
+				throw new IllegalArgumentException("The hand " + hands[i]
+						+ " has a card in common with another hand, the board, or the dead cards");
+			}
+			used |= masks[i];
+		}
+		return masks;
+	}
+
+	/**
+	 * Finds the cards on the board and the dead cards, which can't be dealt
+	 * during calculations.
+	 * 
+	 * @return A mask containing the board and dead cards.
+	 */
+	private long dealt() {
+		long dealt = Card.mask(board.cards());
+		if (Long.bitCount(dealt) != board.cards().size()) {
+			throw new IllegalArgumentException("The board contains a card more than once");
+		}
+		return dealt | Card.mask(dead);
+	}
+
+	/**
+	 * Finds the cards left in the deck after removing the specified cards.
+	 * 
+	 * @param used
+	 *            The cards to remove.
+	 * @return The indices of the cards left in the deck.
+	 */
+	private static int[] deck(long used) {
+		int[] deck = new int[Constants.DECK_SIZE - Long.bitCount(used)];
+		for (int card = 0, i = 0; card < Constants.DECK_SIZE; card++) {
+			if ((used & (1L << card)) == 0) {
+				deck[i++] = card;
+			}
+		}
+		return deck;
+	}
+
+	/**
+	 * Obtains the number of blocks our samples are divided into.
+	 * 
+	 * @return The number of blocks of samples.
+	 */
+	private int blocks() {
+		return (samples() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	/**
+	 * Obtains the largest number of boards to simulate, which is the maximum
+	 * sample size when simulating to a target standard error.
+	 * 
+	 * @return The largest number of boards to simulate.
+	 */
+	private int samples() {
+		return targetStandardError > 0 ? maximumSampleSize : sampleSize;
+	}
+
+	/**
+	 * Simulates random boards for the specified hands or ranges, in batches
+	 * until the standard error of every equity is within our target if there
+	 * is one, until our listener stops the simulation or until our deadline
+	 * passes.
+	 * 
+	 * @param data
+	 *            The hands or ranges, which estimates are sent for.
+	 * @param hands
+	 *            The cards in each hand, or null if sampling from ranges.
+	 * @param sampler
+	 *            The sampler to draw hands from ranges with, or null if using
+	 *            fixed hands.
+	 * @param seed
+	 *            The seed for the calculation.
+	 * @return A map containing the hands or ranges mapped to their estimated
+	 *         equities.
+	 */
+	private <T> Map<T, Equity> simulate(T[] data, long[] hands, JointRangeSampler sampler, long seed) {
+		long[] seeds = seeds(seed);
+		long deadline = (pending != null ? requested : System.nanoTime()) + timeout;
+		int players = hands != null ? hands.length : sampler.ranges();
+		double[] counts = new double[players * COUNTERS];
+		boolean precise = false;
+		if (targetStandardError <= 0 && listener == null) {
+			counts = run(new Simulation(hands, sampler, seeds, 0, seeds.length, deadline));
+		} else {
+
+			/*
+			 * Listeners choose how many blocks we simulate between estimates,
+			 * either directly or by giving each processor one block at a time.
+			 */
+			int blocks = BATCH_BLOCKS;
+			if (listener != null) {
+				blocks = listenerSamples > 0 ? (listenerSamples + BLOCK_SIZE - 1) / BLOCK_SIZE : parallelism();
+			}
+
+			long estimated = System.nanoTime();
+			for (int from = 0; from < seeds.length;) {
+				int to = Math.min(seeds.length, from + blocks);
+				double[] batch = run(new Simulation(hands, sampler, seeds, from, to, deadline));
+				for (int i = 0; i < counts.length; i++) {
+					counts[i] += batch[i];
+				}
+				from = to;
+
+				/*
+				 * Stop once every equity is precise enough, once our listener
+				 * has seen enough or once we are out of time.
+				 */
+				precise = targetStandardError > 0;
+				for (int i = 0; i < players && precise; i++) {
+					precise = standardError(counts, i) <= targetStandardError;
+				}
+				if (listener != null && (listenerNanos == 0 || System.nanoTime() - estimated >= listenerNanos)) {
+					estimated = System.nanoTime();
+					if (!listener.update(estimate(data, counts, sampler, true))) {
+						break;
+					}
+				}
+				if (precise || expired(deadline)) {
+					break;
+				}
+			}
+		}
+
+		/*
+		 * Results are partial if we stopped short of our sample size for any
+		 * reason other than reaching our target standard error.
+		 */
+		double simulated = counts[WIN] + counts[LOSE] + counts[SPLIT];
+		return estimate(data, counts, sampler, !precise && simulated < samples());
+	}
+
+	/**
+	 * Determines whether the specified deadline has passed, if we have one.
+	 * 
+	 * @param deadline
+	 *            The deadline, as given by {@link System#nanoTime()}.
+	 * @return Whether simulations should stop.
+	 */
+	private boolean expired(long deadline) {
+		return timeout > 0 && System.nanoTime() - deadline >= 0;
+	}
+
+	/**
+	 * Obtains the number of threads our work is run on.
+	 * 
+	 * @return The number of threads our work is run on.
+	 */
+	private int parallelism() {
+		if (executor instanceof ForkJoinPool) {
+			return ((ForkJoinPool) executor).getParallelism();
+		}
+		if (executor != null) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return Math.max(1, ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism()
+				: ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	/**
+	 * Runs the specified task on our executor, or on the current or common
+	 * {@link ForkJoinPool} if we do not have one, and waits for its results.
+	 * 
+	 * @param task
+	 *            The task to run.
+	 * @return The counts of the task.
+	 */
+	private double[] run(Work task) {
+		if (executor instanceof ForkJoinPool) {
+			return ((ForkJoinPool) executor).invoke(task);
+		}
+		if (executor == null) {
+			return ForkJoinTask.inForkJoinPool() ? task.invoke() : ForkJoinPool.commonPool().invoke(task);
+		}
+
+		/*
+		 * Other executors are given a task for every unit, which we run
+		 * ourselves if they have not been started so that a busy executor
+		 * cannot leave us waiting.
+		 */
+		List<FutureTask<double[]>> units = new ArrayList<>();
+		try {
+			for (int unit = task.from; unit < task.to; unit++) {
+				Work work = task.slice(unit, unit + 1);
+				FutureTask<double[]> future = new FutureTask<>(work::compute);
+				units.add(future);
+				executor.execute(future);
+			}
+			return join(units, 0, units.size(), task.counters);
+		} finally {
+			for (FutureTask<double[]> unit : units) {
+				unit.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the results of a range of units of work and adds them up, in
+	 * the same order as {@link Work#compute()} would.
+	 * 
+	 * @param units
+	 *            The units of work.
+	 * @param from
+	 *            The first unit to add, inclusive.
+	 * @param to
+	 *            The last unit to add, exclusive.
+	 * @param counters
+	 *            The number of counters in the results.
+	 * @return The counts of the units.
+	 */
+	private static double[] join(List<FutureTask<double[]>> units, int from, int to, int counters) {
+		if (to - from > 1) {
+			int middle = (from + to) >>> 1;
+			double[] counts = join(units, middle, to, counters);
+			double[] other = join(units, from, middle, counters);
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += other[i];
+			}
+			return counts;
+		}
+		if (from == to) {
+			return new double[counters];
+		}
+		FutureTask<double[]> unit = units.get(from);
+		unit.run();
+		try {
+			return unit.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for the calculation");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Runs the specified calculation in the background on a copy of this
+	 * builder.
+	 * 
+	 * @param calculation
+	 *            The calculation to run on the copy.
+	 * @return A future completed with the results of the calculation.
+	 */
+	private <T> CompletableFuture<Map<T, Equity>> async(Function<EquityCalculationBuilder, Map<T, Equity>> calculation) {
+		CompletableFuture<Map<T, Equity>> future = new CompletableFuture<>();
+		EquityCalculationBuilder copy = copy();
+		copy.pending = future;
+		copy.requested = System.nanoTime();
+		Executor executor = this.executor != null ? this.executor : ForkJoinPool.commonPool();
+		executor.execute(() -> {
+			if (future.isDone()) {
+				return;
+			}
+			try {
+				future.complete(calculation.apply(copy));
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Creates a copy of this builder with the same settings.
+	 * 
+	 * @return The copy.
+	 */
+	private EquityCalculationBuilder copy() {
+		EquityCalculationBuilder copy = new EquityCalculationBuilder();
+		copy.dead.addAll(dead);
+		copy.board = board;
+		copy.sampleSize = sampleSize;
+		copy.evaluator = evaluator;
+		copy.exhaustive = exhaustive;
+		copy.streets = streets;
+		copy.seed = seed;
+		copy.targetStandardError = targetStandardError;
+		copy.maximumSampleSize = maximumSampleSize;
+		copy.listener = listener;
+		copy.listenerSamples = listenerSamples;
+		copy.listenerNanos = listenerNanos;
+		copy.executor = executor;
+		copy.timeout = timeout;
+		return copy;
+	}
+
+	/**
+	 * Calculates the standard error of the equity of the specified hand or
+	 * range from its counters.
+	 * 
+	 * @param counts
+	 *            The counters of every hand or range.
+	 * @param player
+	 *            The offset of the hand or range.
+	 * @return The standard error of the equity.
+	 */
+	private static double standardError(double[] counts, int player) {
+		int offset = player * COUNTERS;
+		double samples = counts[offset + WIN] + counts[offset + LOSE] + counts[offset + SPLIT];
+		if (samples < 2) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double mean = counts[offset + SHARE] / samples;
+		double variance = Math.max(0.0, (counts[offset + SQUARES] - samples * mean * mean) / (samples - 1));
+		return Math.sqrt(variance / samples);
+	}
+
+	/**
+	 * Derives a seed for each block of samples from the specified seed, so
+	 * that each block has its own independent random numbers no matter which
+	 * thread it is run on.
+	 * 
+	 * @param seed
+	 *            The seed for the calculation.
+	 * @return The seed of each block of samples.
+	 */
+	private long[] seeds(long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		long[] seeds = new long[blocks()];
+		for (int i = 0; i < seeds.length; i++) {
+			seeds[i] = random.nextLong();
+		}
+		return seeds;
+	}
+
+	/**
+	 * Evaluates the specified hands on the specified complete board, counting
+	 * which of them won, lost and split.
+	 * 
+	 * @param hands
+	 *            The cards in each hand.
+	 * @param board
+	 *            The cards on the board.
+	 * @param ranks
+	 *            An array to store the rank of each hand in.
+	 * @param counts
+	 *            The counters of each hand.
+	 */
+	private void showdown(long[] hands, long board, int[] ranks, double[] counts) {
+
+		/*
+		 * Heads up we only need to know which of the two hands won, which the
+		 * evaluator can often find without ranking both hands.
+		 */
+		if (hands.length == 2) {
+			int result = evaluator.compare(hands[0], hands[1], board);
+			if (result == 0) {
+				record(counts, 0, SPLIT, 0.5);
+				record(counts, 1, SPLIT, 0.5);
+			} else {
+				record(counts, result < 0 ? 0 : 1, WIN, 1.0);
+				record(counts, result < 0 ? 1 : 0, LOSE, 0.0);
+			}
+			return;
+		}
+
+		int best = Integer.MAX_VALUE, winners = 0;
+		for (int i = 0; i < hands.length; i++) {
+			ranks[i] = evaluator.rank(hands[i] | board);
+			if (ranks[i] < best) {
+				best = ranks[i];
+				winners = 1;
+			} else if (ranks[i] == best) {
+				winners++;
+			}
+		}
+		for (int i = 0; i < hands.length; i++) {
+			if (ranks[i] != best) {
+				record(counts, i, LOSE, 0.0);
+			} else if (winners > 1) {
+				record(counts, i, SPLIT, 1.0 / winners);
+			} else {
+				record(counts, i, WIN, 1.0);
+			}
+		}
+	}
+
+	/**
+	 * Records the result of a single board for the specified hand.
+	 * 
+	 * @param counts
+	 *            The counters of each hand.
+	 * @param player
+	 *            The offset of the hand.
+	 * @param result
+	 *            The counter for the result, {@link #WIN}, {@link #LOSE} or
+	 *            {@link #SPLIT}.
+	 * @param share
+	 *            The share of the pot won by the hand.
+	 */
+	private static void record(double[] counts, int player, int result, double share) {
+		int offset = player * COUNTERS;
+		counts[offset + result]++;
+		counts[offset + SHARE] += share;
+		counts[offset + SQUARES] += share * share;
+	}
+
+	/**
+	 * Creates a map containing the specified hands or ranges mapped to their
+	 * equities estimated by a simulation.
+	 * 
+	 * @param data
+	 *            The hands or ranges.
+	 * @param counts
+	 *            The counters of each hand or range, in order.
+	 * @param sampler
+	 *            The sampler hands were drawn from ranges with, or null if
+	 *            using fixed hands.
+	 * @param partial
+	 *            Whether the simulation stopped before its sample size.
+	 * @return A map containing the hands or ranges mapped to their estimated
+	 *         equities.
+	 */
+	private <T> Map<T, Equity> estimate(T[] data, double[] counts, JointRangeSampler sampler, boolean partial) {
+		Map<T, Equity> equities = complete(data, counts, false);
+		for (Equity equity : equities.values()) {
+			equity.rejectionRate = sampler != null ? sampler.rejectionRate() : 0.0;
+			equity.partial = partial;
+		}
+		return equities;
+	}
+
+	/**
+	 * Creates a map containing the entries of the specified array mapped to
+	 * their equities.
+	 * 
+	 * @param data
+	 *            The array whose contents should be used as keys for equities.
+	 * @param counts
+	 *            The counters of each entry, in order.
+	 * @param exact
+	 *            Whether every possible board was evaluated.
+	 * @return A map containing the contents of the array mapped to their
+	 *         equities.
+	 */
+	private <T> Map<T, Equity> complete(T[] data, double[] counts, boolean exact) {
+		HashMap<T, Equity> equities = new HashMap<>();
+		for (int i = 0; i < data.length; i++) {
+			int offset = i * COUNTERS;
+			Equity equity = new Equity();
+			equity.win = counts[offset + WIN];
+			equity.lose = counts[offset + LOSE];
+			equity.split = counts[offset + SPLIT];
+			equity.equity = counts[offset + SHARE];
+			equity.standardError = exact ? 0.0 : standardError(counts, i);
+			equity.complete((long) (equity.win + equity.lose + equity.split));
+			equities.put(data[i], equity);
+		}
+		return equities;
+	}
+
+	/**
+	 * A task that counts the results of a range of units of work, such as the
+	 * boards for a first card or a block of samples. Tasks covering more than
+	 * one unit are split in half, which are run in parallel when the task is
+	 * run in a {@link ForkJoinPool} and one after the other otherwise. The
+	 * counts of the halves are always added in the same order, so the results
+	 * are the same however the task is run.
+	 */
+	private abstract class Work extends RecursiveTask<double[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		/* The number of counters in the results. */
+		protected final int counters;
+
+		/* The range of units to count. */
+		protected final int from, to;
+
+		/**
+		 * Constructs a new {@link Work}.
+		 * 
+		 * @param counters
+		 *            The number of counters in the results.
+		 * @param from
+		 *            The first unit to count, inclusive.
+		 * @param to
+		 *            The last unit to count, exclusive.
+		 */
+		protected Work(int counters, int from, int to) {
+			this.counters = counters;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Creates a task for part of the range of this task.
+		 * 
+		 * @param from
+		 *            The first unit to count, inclusive.
+		 * @param to
+		 *            The last unit to count, exclusive.
+		 * @return The task.
+		 */
+		protected abstract Work slice(int from, int to);
+
+		/**
+		 * Counts the results of a single unit.
+		 * 
+		 * @param unit
+		 *            The unit to count.
+		 * @return The counts of the unit.
+		 */
+		protected abstract double[] count(int unit);
+
+		@Override
+		protected double[] compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				Work left = slice(from, middle);
+				double[] counts, other;
+				if (inForkJoinPool()) {
+					left.fork();
+					counts = slice(middle, to).compute();
+					other = left.join();
+				} else {
+					counts = slice(middle, to).compute();
+					other = left.compute();
+				}
+				for (int i = 0; i < counts.length; i++) {
+					counts[i] += other[i];
+				}
+				return counts;
+			}
+			if (from == to) {
+				return new double[counters];
+			}
+			if (pending != null && pending.isDone()) {
+				throw new CancellationException();
+			}
+			return count(from);
+		}
+
+	}
+
+	/**
+	 * A task that enumerates every board that can be dealt from a deck for a
+	 * range of first cards, counting how often each hand wins, loses and
+	 * splits on them. When recording streets the counters of the river are
+	 * followed by those of the flop and of the turn.
+	 */
+	private class Enumeration extends Work {
+
+		private static final long serialVersionUID = 1L;
+
+		/* The cards in each hand. */
+		private final long[] hands;
+
+		/* The cards on the set board. */
+		private final long board;
+
+		/* The card indices left in the deck. */
+		private final int[] deck;
+
+		/* The number of cards to deal to complete the board. */
+		private final int needed;
+
+		/* Whether to count results on the flop and turn. */
+		private final boolean streets;
+
+		/**
+		 * Constructs a new {@link Enumeration}.
+		 * 
+		 * @param hands
+		 *            The cards in each hand.
+		 * @param board
+		 *            The cards on the set board.
+		 * @param deck
+		 *            The card indices left in the deck.
+		 * @param needed
+		 *            The number of cards to deal to complete the board.
+		 * @param streets
+		 *            Whether to count results on the flop and turn.
+		 * @param from
+		 *            The offset in the deck of the first card to deal first,
+		 *            inclusive.
+		 * @param to
+		 *            The offset in the deck of the last card to deal first,
+		 *            exclusive.
+		 */
+		private Enumeration(long[] hands, long board, int[] deck, int needed, boolean streets, int from, int to) {
+			super(hands.length * COUNTERS * (streets ? 3 : 1), from, to);
+			this.hands = hands;
+			this.board = board;
+			this.deck = deck;
+			this.needed = needed;
+			this.streets = streets;
+		}
+
+		@Override
+		protected Work slice(int from, int to) {
+			return new Enumeration(hands, board, deck, needed, streets, from, to);
+		}
+
+		@Override
+		protected double[] count(int first) {
+			double[] counts = new double[counters];
+			int[] ranks = new int[hands.length];
+			double[][] streets = null;
+			if (this.streets) {
+				streets = new double[2][hands.length * COUNTERS];
+				if (first == 0) {
+					street(board, ranks, streets);
+				}
+			}
+			if (needed == 0) {
+				showdown(hands, board, ranks, counts);
+			} else {
+				long dealt = board | (1L << deck[first]);
+				street(dealt, ranks, streets);
+				deal(dealt, first + 1, needed - 1, ranks, counts, streets);
+			}
+			if (streets != null) {
+				System.arraycopy(streets[0], 0, counts, hands.length * COUNTERS, hands.length * COUNTERS);
+				System.arraycopy(streets[1], 0, counts, 2 * hands.length * COUNTERS, hands.length * COUNTERS);
+			}
+			return counts;
+		}
+
+		/**
+		 * Counts the results of our hands on the specified board if it is a
+		 * flop or turn and we are recording streets.
+		 * 
+		 * @param board
+		 *            The cards dealt so far.
+		 * @param ranks
+		 *            An array to store the rank of each hand in.
+		 * @param streets
+		 *            The counters of each hand on the flop and on the turn, or
+		 *            null if we are not recording streets.
+		 */
+		private void street(long board, int[] ranks, double[][] streets) {
+			int cards = Long.bitCount(board);
+			if (streets != null && (cards == 3 || cards == 4)) {
+				showdown(hands, board, ranks, streets[cards - 3]);
+			}
+		}
+
+		/**
+		 * Deals every combination of the specified number of cards from the
+		 * deck starting at the specified offset, and evaluates our hands on
+		 * each of the boards made.
+		 * 
+		 * @param board
+		 *            The cards dealt so far.
+		 * @param offset
+		 *            The offset in the deck of the first card that can be
+		 *            dealt.
+		 * @param needed
+		 *            The number of cards left to deal.
+		 * @param ranks
+		 *            An array to store the rank of each hand in.
+		 * @param counts
+		 *            The counters of each hand.
+		 * @param streets
+		 *            The counters of each hand on the flop and on the turn, or
+		 *            null if we are not recording streets.
+		 */
+		private void deal(long board, int offset, int needed, int[] ranks, double[] counts, double[][] streets) {
+			if (needed == 0) {
+				showdown(hands, board, ranks, counts);
+				return;
+			}
+			/*
+			 * Flops and turns that cannot be completed from the rest of the
+			 * deck are still dealt when recording streets, and are never
+			 * dealt a river.
+			 */
+			int last = streets != null ? deck.length - 1 : deck.length - needed;
+			for (int i = offset; i <= last; i++) {
+				long dealt = board | (1L << deck[i]);
+				street(dealt, ranks, streets);
+				deal(dealt, i + 1, needed - 1, ranks, counts, streets);
+			}
+		}
+
+	}
+
+	/**
+	 * A task that enumerates every board for a range of pairs of hands,
+	 * weighting the results of each pair.
+	 */
+	private class Matchups extends Work {
+
+		private static final long serialVersionUID = 1L;
+
+		/* The pairs of hands, as created by key(long, long). */
+		private final int[] keys;
+
+		/* The weight of each pair of hands. */
+		private final double[] weights;
+
+		/* The cards on the set board. */
+		private final long board;
+
+		/* The cards on the board and the dead cards. */
+		private final long dealt;
+
+		/**
+		 * Constructs a new {@link Matchups}.
+		 * 
+		 * @param keys
+		 *            The pairs of hands.
+		 * @param weights
+		 *            The weight of each pair of hands.
+		 * @param board
+		 *            The cards on the set board.
+		 * @param dealt
+		 *            The cards on the board and the dead cards.
+		 * @param from
+		 *            The first pair to enumerate, inclusive.
+		 * @param to
+		 *            The last pair to enumerate, exclusive.
+		 */
+		private Matchups(int[] keys, double[] weights, long board, long dealt, int from, int to) {
+			super(2 * COUNTERS, from, to);
+			this.keys = keys;
+			this.weights = weights;
+			this.board = board;
+			this.dealt = dealt;
+		}
+
+		@Override
+		protected Work slice(int from, int to) {
+			return new Matchups(keys, weights, board, dealt, from, to);
+		}
+
+		@Override
+		protected double[] count(int pair) {
+			long[] hands = { hand(keys[pair], 12), hand(keys[pair], 0) };
+			int[] deck = deck(dealt | hands[0] | hands[1]);
+			int needed = Constants.BOARD_SIZE - Long.bitCount(board);
+			double[] counts = new Enumeration(hands, board, deck, needed, false, 0,
+					needed == 0 ? 1 : deck.length - needed + 1).compute();
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] *= weights[pair];
+			}
+			return counts;
+		}
+
+	}
+
+	/**
+	 * A task that evaluates one hand against each of a set of opposing hands
+	 * on the same boards, either every board for a range of first cards or
+	 * blocks of random boards. The counters record the results of our hand
+	 * against each opposing hand.
+	 */
+	private class Versus extends Work {
+
+		private static final long serialVersionUID = 1L;
+
+		/* The cards in our hand. */
+		private final long hand;
+
+		/* The cards in each opposing hand. */
+		private final long[] hands;
+
+		/* The cards on the board. */
+		private final long board;
+
+		/* The cards that can be dealt to complete the board. */
+		private final int[] deck;
+
+		/* The number of cards to deal to complete the board. */
+		private final int needed;
+
+		/* The seed of each block of random boards, or null to enumerate. */
+		private final long[] seeds;
+
+		/**
+		 * Constructs a new {@link Versus}.
+		 * 
+		 * @param hand
+		 *            The cards in our hand.
+		 * @param hands
+		 *            The cards in each opposing hand.
+		 * @param board
+		 *            The cards on the board.
+		 * @param deck
+		 *            The cards that can be dealt to complete the board.
+		 * @param needed
+		 *            The number of cards to deal to complete the board.
+		 * @param seeds
+		 *            The seed of each block of random boards, or null to
+		 *            enumerate every board.
+		 * @param from
+		 *            The first unit to count, inclusive.
+		 * @param to
+		 *            The last unit to count, exclusive.
+		 */
+		private Versus(long hand, long[] hands, long board, int[] deck, int needed, long[] seeds, int from, int to) {
+			super(hands.length * COUNTERS, from, to);
+			this.hand = hand;
+			this.hands = hands;
+			this.board = board;
+			this.deck = deck;
+			this.needed = needed;
+			this.seeds = seeds;
+		}
+
+		@Override
+		protected Work slice(int from, int to) {
+			return new Versus(hand, hands, board, deck, needed, seeds, from, to);
+		}
+
+		@Override
+		protected double[] count(int unit) {
+			double[] counts = new double[counters];
+			if (seeds == null) {
+				if (needed == 0) {
+					showdown(board, counts);
+				} else {
+					deal(board | (1L << deck[unit]), unit + 1, needed - 1, counts);
+				}
+				return counts;
+			}
+
+			/*
+			 * Deal each board by shuffling the cards we need to the front of
+			 * our own copy of the deck.
+			 */
+			SplittableRandom random = new SplittableRandom(seeds[unit]);
+			int[] cards = deck.clone();
+			int samples = Math.min(BLOCK_SIZE, samples() - unit * BLOCK_SIZE);
+			for (int i = 0; i < samples; i++) {
+				long dealt = board;
+				for (int j = 0; j < needed; j++) {
+					int k = j + random.nextInt(cards.length - j);
+					int card = cards[k];
+					cards[k] = cards[j];
+					cards[j] = card;
+					dealt |= 1L << card;
+				}
+				showdown(dealt, counts);
+			}
+			return counts;
+		}
+
+		/**
+		 * Deals every combination of the specified number of cards from the
+		 * deck starting at the specified offset, and evaluates our hands on
+		 * each of the boards made.
+		 * 
+		 * @param board
+		 *            The cards dealt so far.
+		 * @param offset
+		 *            The offset in the deck of the first card that can be
+		 *            dealt.
+		 * @param needed
+		 *            The number of cards left to deal.
+		 * @param counts
+		 *            The counters of each opposing hand.
+		 */
+		private void deal(long board, int offset, int needed, double[] counts) {
+			if (needed == 0) {
+				showdown(board, counts);
+				return;
+			}
+			for (int i = offset; i <= deck.length - needed; i++) {
+				deal(board | (1L << deck[i]), i + 1, needed - 1, counts);
+			}
+		}
+
+		/**
+		 * Ranks our hand once on the specified complete board and compares it
+		 * against every opposing hand that does not share a card with it.
+		 * 
+		 * @param board
+		 *            The cards on the board.
+		 * @param counts
+		 *            The counters of each opposing hand.
+		 */
+		private void showdown(long board, double[] counts) {
+			int rank = evaluator.rank(hand | board);
+			for (int i = 0; i < hands.length; i++) {
+				if ((hands[i] & board) != 0) {
+					continue;
+				}
+				int other = evaluator.rank(hands[i] | board);
+				if (rank < other) {
+					record(counts, i, WIN, 1.0);
+				} else if (rank > other) {
+					record(counts, i, LOSE, 0.0);
+				} else {
+					record(counts, i, SPLIT, 0.5);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * A task that evaluates every hand in a range against every hand in an
+	 * opposing range on the same boards, either every board for a range of
+	 * first cards or blocks of random boards. The counters hold the weighted
+	 * share of the pot won by each of our hands followed by the total weight
+	 * of the opposing hands it was compared against.
+	 */
+	private class Distribution extends Work {
+
+		private static final long serialVersionUID = 1L;
+
+		/* The cards in each of our hands. */
+		private final long[] ours;
+
+		/* The cards in each opposing hand. */
+		private final long[] theirs;
+
+		/* The weight of each opposing hand. */
+		private final double[] weights;
+
+		/* The cards on the board. */
+		private final long board;
+
+		/* The cards that can be dealt to complete the board. */
+		private final int[] deck;
+
+		/* The number of cards to deal to complete the board. */
+		private final int needed;
+
+		/* The seed of each block of random boards, or null to enumerate. */
+		private final long[] seeds;
+
+		/**
+		 * Constructs a new {@link Distribution}.
+		 * 
+		 * @param ours
+		 *            The cards in each of our hands.
+		 * @param theirs
+		 *            The cards in each opposing hand.
+		 * @param weights
+		 *            The weight of each opposing hand.
+		 * @param board
+		 *            The cards on the board.
+		 * @param deck
+		 *            The cards that can be dealt to complete the board.
+		 * @param needed
+		 *            The number of cards to deal to complete the board.
+		 * @param seeds
+		 *            The seed of each block of random boards, or null to
+		 *            enumerate every board.
+		 * @param from
+		 *            The first unit to count, inclusive.
+		 * @param to
+		 *            The last unit to count, exclusive.
+		 */
+		private Distribution(long[] ours, long[] theirs, double[] weights, long board, int[] deck, int needed,
+				long[] seeds, int from, int to) {
+			super(ours.length * 2, from, to);
+			this.ours = ours;
+			this.theirs = theirs;
+			this.weights = weights;
+			this.board = board;
+			this.deck = deck;
+			this.needed = needed;
+			this.seeds = seeds;
+		}
+
+		@Override
+		protected Work slice(int from, int to) {
+			return new Distribution(ours, theirs, weights, board, deck, needed, seeds, from, to);
+		}
+
+		@Override
+		protected double[] count(int unit) {
+			double[] counts = new double[counters];
+			int[] ranks = new int[ours.length], others = new int[theirs.length];
+			if (seeds == null) {
+				if (needed == 0) {
+					showdown(board, ranks, others, counts);
+				} else {
+					deal(board | (1L << deck[unit]), unit + 1, needed - 1, ranks, others, counts);
+				}
+				return counts;
+			}
+
+			SplittableRandom random = new SplittableRandom(seeds[unit]);
+			int[] cards = deck.clone();
+			int samples = Math.min(BLOCK_SIZE, samples() - unit * BLOCK_SIZE);
+			for (int i = 0; i < samples; i++) {
+				long dealt = board;
+				for (int j = 0; j < needed; j++) {
+					int k = j + random.nextInt(cards.length - j);
+					int card = cards[k];
+					cards[k] = cards[j];
+					cards[j] = card;
+					dealt |= 1L << card;
+				}
+				showdown(dealt, ranks, others, counts);
+			}
+			return counts;
+		}
+
+		/**
+		 * Deals every combination of the specified number of cards from the
+		 * deck starting at the specified offset, and evaluates our hands on
+		 * each of the boards made.
+		 * 
+		 * @param board
+		 *            The cards dealt so far.
+		 * @param offset
+		 *            The offset in the deck of the first card that can be
+		 *            dealt.
+		 * @param needed
+		 *            The number of cards left to deal.
+		 * @param ranks
+		 *            An array to store the rank of each of our hands in.
+		 * @param others
+		 *            An array to store the rank of each opposing hand in.
+		 * @param counts
+		 *            The counters of each of our hands.
+		 */
+		private void deal(long board, int offset, int needed, int[] ranks, int[] others, double[] counts) {
+			if (needed == 0) {
+				showdown(board, ranks, others, counts);
+				return;
+			}
+			for (int i = offset; i <= deck.length - needed; i++) {
+				deal(board | (1L << deck[i]), i + 1, needed - 1, ranks, others, counts);
+			}
+		}
+
+		/**
+		 * Ranks every hand that does not share a card with the specified
+		 * complete board once, then compares each of our hands against every
+		 * opposing hand it does not share a card with.
+		 * 
+		 * @param board
+		 *            The cards on the board.
+		 * @param ranks
+		 *            An array to store the rank of each of our hands in.
+		 * @param others
+		 *            An array to store the rank of each opposing hand in.
+		 * @param counts
+		 *            The counters of each of our hands.
+		 */
+		private void showdown(long board, int[] ranks, int[] others, double[] counts) {
+			for (int i = 0; i < theirs.length; i++) {
+				others[i] = (theirs[i] & board) != 0 ? -1 : evaluator.rank(theirs[i] | board);
+			}
+			for (int i = 0; i < ours.length; i++) {
+				if ((ours[i] & board) != 0) {
+					continue;
+				}
+				int rank = evaluator.rank(ours[i] | board);
+				double share = 0.0, total = 0.0;
+				for (int j = 0; j < theirs.length; j++) {
+					if (others[j] < 0 || (ours[i] & theirs[j]) != 0) {
+						continue;
+					}
+					total += weights[j];
+					if (rank < others[j]) {
+						share += weights[j];
+					} else if (rank == others[j]) {
+						share += weights[j] * 0.5;
+					}
+				}
+				counts[i * 2] += share;
+				counts[i * 2 + 1] += total;
+			}
+		}
+
+	}
+
+	/**
+	 * A task that compares every pair of a set of hands on each of a list of
+	 * complete boards, split into as many parts of the list as there are
+	 * units. The counters hold the number of half pots won by each hand
+	 * against each later hand, which are whole numbers so the results are the
+	 * same however the boards are divided.
+	 */
+	private class Showdowns extends Work {
+
+		private static final long serialVersionUID = 1L;
+
+		/* The cards in each hand. */
+		private final long[] hands;
+
+		/* The cards on each board. */
+		private final long[] boards;
+
+		/* The number of units the boards are divided into. */
+		private final int units;
+
+		/**
+		 * Constructs a new {@link Showdowns}.
+		 * 
+		 * @param hands
+		 *            The cards in each hand.
+		 * @param boards
+		 *            The cards on each board.
+		 * @param units
+		 *            The number of units the boards are divided into.
+		 * @param from
+		 *            The first unit to count, inclusive.
+		 * @param to
+		 *            The last unit to count, exclusive.
+		 */
+		private Showdowns(long[] hands, long[] boards, int units, int from, int to) {
+			super(hands.length * (hands.length - 1) / 2, from, to);
+			this.hands = hands;
+			this.boards = boards;
+			this.units = units;
+		}
+
+		@Override
+		protected Work slice(int from, int to) {
+			return new Showdowns(hands, boards, units, from, to);
+		}
+
+		@Override
+		protected double[] count(int unit) {
+			double[] counts = new double[counters];
+			int[] ranks = new int[hands.length];
+			for (int board = boards.length * unit / units; board < boards.length * (unit + 1) / units; board++) {
+				long cards = boards[board];
+				for (int i = 0; i < hands.length; i++) {
+					ranks[i] = (hands[i] & cards) != 0 ? -1 : evaluator.rank(hands[i] | cards);
+				}
+
+				/*
+				 * Pairs are counted in order, skipping any with a hand that
+				 * shares a card with the board or the other hand.
+				 */
+				int pair = 0;
+				for (int i = 0; i < hands.length; i++) {
+					int rank = ranks[i];
+					if (rank < 0) {
+						pair += hands.length - i - 1;
+						continue;
+					}
+					long hand = hands[i];
+					for (int j = i + 1; j < hands.length; j++, pair++) {
+						int other = ranks[j];
+						if (other < 0 || (hand & hands[j]) != 0) {
+							continue;
+						}
+						counts[pair] += rank < other ? 2 : rank == other ? 1 : 0;
+					}
+				}
+			}
+			return counts;
+		}
+
+	}
+
+	/**
+	 * A task that simulates blocks of samples, each dealing random boards, and
+	 * random hands from our ranges if there are any, counting how often each
+	 * hand wins, loses and splits on them. Every block has its own seed and
+	 * counts, so the results are the same however the blocks are divided
+	 * between threads. Blocks other than the first are skipped once the
+	 * deadline of the calculation has passed.
+	 */
+	private class Simulation extends Work {
+
+		private static final long serialVersionUID = 1L;
+
+		/* The cards in each hand, or null if sampling from ranges. */
+		private final long[] hands;
+
+		/* The sampler to draw hands from ranges with, or null if using fixed hands. */
+		private final JointRangeSampler sampler;
+
+		/* The seed of each block. */
+		private final long[] seeds;
+
+		/* The time blocks must start by, as given by System.nanoTime(). */
+		private final long deadline;
+
+		/**
+		 * Constructs a new {@link Simulation}.
+		 * 
+		 * @param hands
+		 *            The cards in each hand, or null if sampling from ranges.
+		 * @param sampler
+		 *            The sampler to draw hands from ranges with, or null if
+		 *            using fixed hands.
+		 * @param seeds
+		 *            The seed of each block.
+		 * @param from
+		 *            The first block to simulate, inclusive.
+		 * @param to
+		 *            The last block to simulate, exclusive.
+		 * @param deadline
+		 *            The time blocks must start by, as given by
+		 *            {@link System#nanoTime()}, if we have a deadline.
+		 */
+		private Simulation(long[] hands, JointRangeSampler sampler, long[] seeds, int from, int to, long deadline) {
+			super((hands != null ? hands.length : sampler.ranges()) * COUNTERS, from, to);
+			this.hands = hands;
+			this.sampler = sampler;
+			this.seeds = seeds;
+			this.deadline = deadline;
+		}
+
+		@Override
+		protected Work slice(int from, int to) {
+			return new Simulation(hands, sampler, seeds, from, to, deadline);
+		}
+
+		@Override
+		protected double[] count(int block) {
+			int players = counters / COUNTERS;
+			double[] counts = new double[counters];
+			if (block > 0 && expired(deadline)) {
+				return counts;
+			}
+			SplittableRandom random = new SplittableRandom(seeds[block]);
+			long[] hands = this.hands != null ? this.hands : new long[players];
+			int[] ranks = new int[players];
+			long dealt = dealt(), board = Card.mask(EquityCalculationBuilder.this.board.cards());
+			int[] deck = deck(dealt);
+			int needed = Constants.BOARD_SIZE - EquityCalculationBuilder.this.board.cards().size();
+			int samples = Math.min(BLOCK_SIZE, samples() - block * BLOCK_SIZE);
+			for (int sample = 0; sample < samples; sample++) {
+
+				/*
+				 * Sample our hands from our ranges if we have any.
+				 */
+				if (sampler != null) {
+					sampler.sample(random, hands);
+				}
+				long used = 0L;
+				for (long hand : hands) {
+					used |= hand;
+				}
+
+				/*
+				 * Deal the rest of the board by shuffling just enough of the
+				 * deck, skipping any cards in our hands.
+				 */
+				long complete = board;
+				for (int i = 0, remaining = needed; remaining > 0; i++) {
+					int j = i + random.nextInt(deck.length - i);
+					int card = deck[j];
+					deck[j] = deck[i];
+					deck[i] = card;
+					if ((used & (1L << card)) == 0) {
+						complete |= 1L << card;
+						remaining--;
+					}
+				}
+				showdown(hands, complete, ranks, counts);
+			}
+			return counts;
+		}
+
+	}
+
+	/**
+	 * Represents a hand's equity against one or more other hands.
+	 */
+	public class Equity {
+
+		/*
+		 * Win, loss, and split decimals. These will not be set to their correct
+		 * values until right at the very end of calculation, after a call to
+		 * complete().
+		 */
+		private double win = 0.0, lose = 0.0, split = 0.0;
+
+		/* The share of the pot won on average, set by complete(). */
+		private double equity = 0.0;
+
+		/* The standard error of the equity. */
+		private double standardError = 0.0;
+
+		/* The number of boards the hand was evaluated on. */
+		private long samples = 0;
+
+		/* The fraction of hands drawn from ranges that were discarded. */
+		private double rejectionRate = 0.0;
+
+		/* Whether the simulation stopped before its sample size. */
+		private boolean partial = false;
+
+		/* The win, lose and split decimals on the flop and turn, or null. */
+		private double[] streets = null;
 
 		/* No external instantiation. */
 		private Equity() { }
@@ -469,14 +2483,141 @@ public class EquityCalculationBuilder {
 			return split;
 		}
 
+		/**
+		 * Obtains the share of the pot the hand or hand group associated with
+		 * this equity wins on average, counting wins as the whole pot and
+		 * splits as an equal share of it.
+		 * 
+		 * @return The share of the pot won on average, as a decimal.
+		 */
+		public double equity() {
+			return equity;
+		}
+
+		/**
+		 * Obtains the number of boards the hand or hand group associated with
+		 * this equity was evaluated on.
+		 * 
+		 * @return The number of boards evaluated.
+		 */
+		public long samples() {
+			return samples;
+		}
+
+		/**
+		 * Obtains the standard error of {@link #equity()}, which is 0 for
+		 * calculations that enumerated every board.
+		 * 
+		 * @return The standard error of the equity, as a decimal.
+		 */
+		public double standardError() {
+			return standardError;
+		}
+
+		/**
+		 * Obtains the fraction of the hands drawn from ranges during the
+		 * calculation that were discarded because they could not be dealt
+		 * together with the other hands drawn. This is 0 for calculations
+		 * that did not sample from ranges.
+		 * 
+		 * @return The rejection rate of the calculation, as a decimal.
+		 */
+		public double rejectionRate() {
+			return rejectionRate;
+		}
+
+		/**
+		 * Obtains whether this equity is an estimate from a simulation that
+		 * stopped before its sample size, because its deadline passed, its
+		 * listener stopped it or it is an interim estimate sent to a
+		 * listener. Simulations stopped by reaching their target standard
+		 * error are not partial.
+		 * 
+		 * @return Whether this equity is a partial estimate.
+		 */
+		public boolean partial() {
+			return partial;
+		}
+
+		/**
+		 * Obtains how often the hand associated with this equity is ahead of
+		 * every other hand on the specified street, as a decimal. Streets
+		 * before the river are only recorded when using
+		 * {@link EquityCalculationBuilder#useStreetBreakdown()}.
+		 * 
+		 * @param street
+		 *            The street.
+		 * @return How often the hand is ahead on the street, as a decimal, or
+		 *         {@link Double#NaN} if the street was not recorded.
+		 */
+		public double win(Street street) {
+			return street(street, WIN);
+		}
+
+		/**
+		 * Obtains how often the hand associated with this equity is behind on
+		 * the specified street, as a decimal. Streets before the river are
+		 * only recorded when using
+		 * {@link EquityCalculationBuilder#useStreetBreakdown()}.
+		 * 
+		 * @param street
+		 *            The street.
+		 * @return How often the hand is behind on the street, as a decimal, or
+		 *         {@link Double#NaN} if the street was not recorded.
+		 */
+		public double lose(Street street) {
+			return street(street, LOSE);
+		}
+
+		/**
+		 * Obtains how often the hand associated with this equity is tied for
+		 * the best hand on the specified street, as a decimal. Streets before
+		 * the river are only recorded when using
+		 * {@link EquityCalculationBuilder#useStreetBreakdown()}.
+		 * 
+		 * @param street
+		 *            The street.
+		 * @return How often the hand is tied on the street, as a decimal, or
+		 *         {@link Double#NaN} if the street was not recorded.
+		 */
+		public double split(Street street) {
+			return street(street, SPLIT);
+		}
+
+		/**
+		 * Obtains the specified result on the specified street.
+		 * 
+		 * @param street
+		 *            The street.
+		 * @param result
+		 *            The result, {@link #WIN}, {@link #LOSE} or
+		 *            {@link #SPLIT}.
+		 * @return The result, as a decimal.
+		 */
+		private double street(Street street, int result) {
+			if (street == Street.RIVER) {
+				return result == WIN ? win : result == LOSE ? lose : split;
+			}
+			if (streets == null || street == Street.PREFLOP) {
+				return Double.NaN;
+			}
+			return streets[(street.ordinal() - 1) * 3 + result];
+		}
+
 		/**
 		 * Completes the {@link Equity} object by dividing the win/lose/split
-		 * numbers by the sample size to create a decimal average of each.
+		 * numbers by the number of samples to create a decimal average of
+		 * each.
+		 * 
+		 * @param samples
+		 *            The number of boards the hand was evaluated on.
 		 */
-		private void complete() {
-			this.win /= sampleSize;
-			this.lose /= sampleSize;
-			this.split /= sampleSize;
+		private void complete(long samples) {
+			this.samples = samples;
+			this.win /= samples;
+			this.lose /= samples;
+			this.split /= samples;
+			this.equity /= samples;
 		}
 
 		@Override
@@ -0,0 +1,169 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.tool;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import codes.derive.foldem.Constants;
+import codes.derive.foldem.Hand;
+
+/**
+ * Contains the equity of every hand in a range against an opposing range, as
+ * calculated by
+ * {@link EquityCalculationBuilder#calculateDistribution(codes.derive.foldem.Range, codes.derive.foldem.Range)}
+ * , sorted from the weakest hand to the strongest so the shape of the range's
+ * equity can be seen.
+ *
+ * <p>
+ * Fractions of the range are weighted by the weight of each hand in the range.
+ * </p>
+ */
+public class EquityDistribution {
+
+	/* The hands in the range, sorted by their equity. */
+	private final Hand[] hands;
+
+	/* The equity of each hand, sorted. */
+	private final double[] equities;
+
+	/* The weight of each hand in the range, in the same order. */
+	private final double[] weights;
+
+	/* The equity of each hand by index, or NaN if it was not calculated. */
+	private final double[] indexed = new double[Constants.HAND_COMBINATIONS];
+
+	/* The total weight of the hands. */
+	private final double total;
+
+	/* Whether every board was evaluated. */
+	private final boolean exact;
+
+	/**
+	 * Constructs a new {@link EquityDistribution}.
+	 *
+	 * @param hands
+	 *            The hands in the range.
+	 * @param equities
+	 *            The equity of each hand.
+	 * @param weights
+	 *            The weight of each hand in the range.
+	 * @param exact
+	 *            Whether every board was evaluated.
+	 */
+	EquityDistribution(Hand[] hands, double[] equities, double[] weights, boolean exact) {
+		Integer[] order = new Integer[hands.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingDouble(i -> equities[i]));
+		this.hands = new Hand[hands.length];
+		this.equities = new double[hands.length];
+		this.weights = new double[hands.length];
+		Arrays.fill(indexed, Double.NaN);
+		double total = 0.0;
+		for (int i = 0; i < order.length; i++) {
+			this.hands[i] = hands[order[i]];
+			this.equities[i] = equities[order[i]];
+			this.weights[i] = weights[order[i]];
+			indexed[hands[order[i]].index()] = equities[order[i]];
+			total += weights[order[i]];
+		}
+		this.total = total;
+		this.exact = exact;
+	}
+
+	/**
+	 * Obtains the hands in the range that were calculated, sorted from the
+	 * lowest equity to the highest.
+	 *
+	 * @return An unmodifiable list of the hands.
+	 */
+	public List<Hand> hands() {
+		return Collections.unmodifiableList(Arrays.asList(hands.clone()));
+	}
+
+	/**
+	 * Obtains the equity of each hand in the range, sorted from the lowest to
+	 * the highest in the same order as {@link #hands()}.
+	 *
+	 * @return A copy of the sorted equities.
+	 */
+	public double[] equities() {
+		return equities.clone();
+	}
+
+	/**
+	 * Obtains the equity of the specified hand in the range against the
+	 * opposing range.
+	 *
+	 * @param hand
+	 *            The hand.
+	 * @return The share of the pot won on average, as a decimal, or
+	 *         {@link Double#NaN} if the hand was not calculated.
+	 */
+	public double equity(Hand hand) {
+		return indexed[hand.index()];
+	}
+
+	/**
+	 * Obtains the fraction of the range with at least the specified equity.
+	 *
+	 * @param equity
+	 *            The smallest equity to count, as a decimal.
+	 * @return The weighted fraction of the range, as a decimal.
+	 */
+	public double fraction(double equity) {
+		double count = 0.0;
+		for (int i = equities.length - 1; i >= 0 && equities[i] >= equity; i--) {
+			count += weights[i];
+		}
+		return count / total;
+	}
+
+	/**
+	 * Divides the equities from 0 to 1 into the specified number of buckets of
+	 * equal width, and obtains the fraction of the range in each of them. The
+	 * last bucket includes equities of exactly 1.
+	 *
+	 * @param buckets
+	 *            The number of buckets.
+	 * @return The weighted fraction of the range in each bucket, as decimals.
+	 */
+	public double[] histogram(int buckets) {
+		if (buckets < 1) {
+			throw new IllegalArgumentException("Number of buckets must be positive");
+		}
+		double[] histogram = new double[buckets];
+		for (int i = 0; i < equities.length; i++) {
+			histogram[Math.min(buckets - 1, (int) (equities[i] * buckets))] += weights[i] / total;
+		}
+		return histogram;
+	}
+
+	/**
+	 * Obtains whether every board was evaluated, making the equities exact.
+	 *
+	 * @return Whether the equities are exact.
+	 */
+	public boolean exact() {
+		return exact;
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.tool;
+
+import java.util.Map;
+
+import codes.derive.foldem.tool.EquityCalculationBuilder.Equity;
+
+/**
+ * Receives interim estimates of the equities being simulated by an
+ * {@link EquityCalculationBuilder}, and decides whether the simulation should
+ * go on.
+ *
+ * @see EquityCalculationBuilder#useListener(EquityListener, int)
+ */
+@FunctionalInterface
+public interface EquityListener {
+
+	/**
+	 * Called with an estimate of the equity of every hand or range from the
+	 * boards simulated so far. The estimates are snapshots, and are not
+	 * changed as the simulation goes on.
+	 *
+	 * @param equities
+	 *            A map containing each hand or range being calculated mapped
+	 *            to its estimated equity, including its
+	 *            {@link Equity#standardError()} and
+	 *            {@link Equity#samples()} so far.
+	 * @return Whether to continue simulating, the calculation stops and
+	 *         returns these estimates if false.
+	 */
+	public boolean update(Map<?, Equity> equities);
+
+}
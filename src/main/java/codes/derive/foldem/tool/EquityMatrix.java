@@ -0,0 +1,228 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.tool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Constants;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.Range;
+import codes.derive.foldem.board.Board;
+
+/**
+ * Contains the exact equity of every hand against every other hand on a
+ * board, as calculated by {@link EquityCalculationBuilder#calculateMatrix()},
+ * so that the equity of any two ranges on the board can be found without
+ * dealing another board.
+ *
+ * <p>
+ * The matrix has a row and a column for every hand, by {@link Hand#index()},
+ * and holds each equity quantized to an unsigned 16 bit value in a direct
+ * buffer outside of the heap, taking 3.5 megabytes. Equities read from it are
+ * within 1/131070 of the exact equity. The equity of two ranges is the
+ * bilinear form of their weights and the matrix, counting only pairs of hands
+ * that do not share a card, which only visits the rows and columns of hands
+ * with a weight.
+ * </p>
+ *
+ * <p>
+ * Instances can be shared between threads.
+ * </p>
+ */
+public class EquityMatrix {
+
+	/* The largest quantized equity, representing a whole pot. */
+	private static final int SCALE = 0xFFFF;
+
+	/* The cards in each hand, by index. */
+	private static final long[] MASKS = new long[Constants.HAND_COMBINATIONS];
+
+	static {
+		for (int i = 0; i < MASKS.length; i++) {
+			MASKS[i] = Card.mask(Hand.fromIndex(i).cards());
+		}
+	}
+
+	/* The board the equities are for. */
+	private final Board board;
+
+	/* The cards on the board and the dead cards. */
+	private final long dealt;
+
+	/* The quantized equity of each hand against each other hand. */
+	private final ShortBuffer equities;
+
+	/**
+	 * Constructs a new {@link EquityMatrix} from the pot shares won by the
+	 * hands that can be dealt.
+	 *
+	 * @param board
+	 *            The board the equities are for.
+	 * @param dealt
+	 *            The cards on the board and the dead cards.
+	 * @param live
+	 *            The index of each hand that can be dealt, in order.
+	 * @param shares
+	 *            The number of half pots won by each hand in live against
+	 *            each later hand in live, for every pair in order.
+	 * @param boards
+	 *            The number of boards each pair of hands was evaluated on.
+	 */
+	EquityMatrix(Board board, long dealt, int[] live, double[] shares, long boards) {
+		this.board = board;
+		this.dealt = dealt;
+		this.equities = ByteBuffer.allocateDirect(Constants.HAND_COMBINATIONS * Constants.HAND_COMBINATIONS * 2)
+				.order(ByteOrder.nativeOrder()).asShortBuffer();
+		int pair = 0;
+		for (int i = 0; i < live.length; i++) {
+			for (int j = i + 1; j < live.length; j++, pair++) {
+				if ((MASKS[live[i]] & MASKS[live[j]]) != 0) {
+					continue;
+				}
+				int equity = (int) Math.round(shares[pair] * SCALE / (2.0 * boards));
+				equities.put(live[i] * Constants.HAND_COMBINATIONS + live[j], (short) equity);
+				equities.put(live[j] * Constants.HAND_COMBINATIONS + live[i], (short) (SCALE - equity));
+			}
+		}
+	}
+
+	/**
+	 * Obtains the board the equities are for.
+	 *
+	 * @return The board.
+	 */
+	public Board board() {
+		return board;
+	}
+
+	/**
+	 * Obtains the equity of the specified hand against another hand.
+	 *
+	 * @param hand
+	 *            The hand.
+	 * @param villain
+	 *            The opposing hand.
+	 * @return The share of the pot won by the hand on average, as a decimal,
+	 *         or {@link Double#NaN} if the hands share a card or cannot be
+	 *         dealt on the board.
+	 */
+	public double equity(Hand hand, Hand villain) {
+		int a = hand.index(), b = villain.index();
+		if (((MASKS[a] | MASKS[b]) & dealt) != 0 || (MASKS[a] & MASKS[b]) != 0) {
+			return Double.NaN;
+		}
+		return (equities.get(a * Constants.HAND_COMBINATIONS + b) & SCALE) / (double) SCALE;
+	}
+
+	/**
+	 * Obtains the equity of the specified range against another range, with
+	 * every pair of hands that can be dealt together weighted by the product
+	 * of their weights.
+	 *
+	 * @param range
+	 *            The range.
+	 * @param villain
+	 *            The opposing range.
+	 * @return The share of the pot won by the range on average, as a decimal,
+	 *         or {@link Double#NaN} if no two hands in the ranges can be dealt
+	 *         together.
+	 */
+	public double equity(Range range, Range villain) {
+		return equity(weights(range), weights(villain));
+	}
+
+	/**
+	 * Obtains the equity of a range against another range given the weight
+	 * of every hand in each of them, by {@link Hand#index()}. Hands that
+	 * cannot be dealt on the board are left out, and pairs of hands are
+	 * weighted by the product of their weights.
+	 *
+	 * @param range
+	 *            The weight of each hand in the range.
+	 * @param villain
+	 *            The weight of each hand in the opposing range.
+	 * @return The share of the pot won by the range on average, as a decimal,
+	 *         or {@link Double#NaN} if no two hands in the ranges can be dealt
+	 *         together.
+	 */
+	public double equity(double[] range, double[] villain) {
+		if (range.length != Constants.HAND_COMBINATIONS || villain.length != Constants.HAND_COMBINATIONS) {
+			throw new IllegalArgumentException("Weights must be given for every hand");
+		}
+		int[] ours = weighted(range), theirs = weighted(villain);
+
+		/*
+		 * Sum the weighted equities of each row along the columns of the
+		 * opposing hands, along with the weight of the hands it can face.
+		 */
+		double shares = 0.0, total = 0.0;
+		for (int a : ours) {
+			long cards = MASKS[a];
+			int row = a * Constants.HAND_COMBINATIONS;
+			double share = 0.0, weight = 0.0;
+			for (int b : theirs) {
+				if ((cards & MASKS[b]) == 0) {
+					share += villain[b] * (equities.get(row + b) & SCALE);
+					weight += villain[b];
+				}
+			}
+			shares += range[a] * share;
+			total += range[a] * weight;
+		}
+		return total == 0 ? Double.NaN : shares / SCALE / total;
+	}
+
+	/**
+	 * Finds the hands with a weight that can be dealt on our board.
+	 *
+	 * @param weights
+	 *            The weight of each hand.
+	 * @return The index of each hand with a weight.
+	 */
+	private int[] weighted(double[] weights) {
+		int[] hands = new int[weights.length];
+		int count = 0;
+		for (int i = 0; i < weights.length; i++) {
+			if (weights[i] != 0 && (MASKS[i] & dealt) == 0) {
+				hands[count++] = i;
+			}
+		}
+		return Arrays.copyOf(hands, count);
+	}
+
+	/**
+	 * Creates a vector containing the weight of every hand in the specified
+	 * range by {@link Hand#index()}, for use with
+	 * {@link #equity(double[], double[])}.
+	 *
+	 * @param range
+	 *            The range.
+	 * @return The weight of every hand, 0 for hands not in the range.
+	 */
+	public static double[] weights(Range range) {
+		double[] weights = new double[Constants.HAND_COMBINATIONS];
+		for (Hand hand : range.all()) {
+			weights[hand.index()] = range.weight(hand);
+		}
+		return weights;
+	}
+
+}
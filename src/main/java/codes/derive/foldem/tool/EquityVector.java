@@ -0,0 +1,170 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import codes.derive.foldem.Constants;
+import codes.derive.foldem.Hand;
+
+/**
+ * Contains the equity of a hand against every hand in a range, as calculated
+ * by {@link EquityCalculationBuilder#calculateVector(Hand, codes.derive.foldem.Range)}.
+ *
+ * <p>
+ * Equities are stored densely by {@link Hand#index()}, with
+ * {@link Double#NaN} for hands that are not in the range or cannot be dealt
+ * against the hand, so vectors for the same hand on different boards or
+ * against different ranges can be compared index by index.
+ * </p>
+ */
+public class EquityVector {
+
+	/* The hand the equities are for. */
+	private final Hand hand;
+
+	/* The equity of the hand against each hand, by index. */
+	private final double[] equities = new double[Constants.HAND_COMBINATIONS];
+
+	/* The standard error of each equity, by index. */
+	private final double[] standardErrors = new double[Constants.HAND_COMBINATIONS];
+
+	/* The number of boards each hand was evaluated on, by index. */
+	private final long[] samples = new long[Constants.HAND_COMBINATIONS];
+
+	/* Whether every board was evaluated. */
+	private final boolean exact;
+
+	/**
+	 * Constructs a new {@link EquityVector} with no equities.
+	 *
+	 * @param hand
+	 *            The hand the equities are for.
+	 * @param exact
+	 *            Whether every board was evaluated.
+	 */
+	EquityVector(Hand hand, boolean exact) {
+		this.hand = hand;
+		this.exact = exact;
+		Arrays.fill(equities, Double.NaN);
+		Arrays.fill(standardErrors, Double.NaN);
+	}
+
+	/**
+	 * Sets the equity of our hand against the hand with the specified index.
+	 *
+	 * @param index
+	 *            The index of the opposing hand.
+	 * @param equity
+	 *            The equity of our hand.
+	 * @param standardError
+	 *            The standard error of the equity.
+	 * @param samples
+	 *            The number of boards evaluated.
+	 */
+	void set(int index, double equity, double standardError, long samples) {
+		this.equities[index] = equity;
+		this.standardErrors[index] = standardError;
+		this.samples[index] = samples;
+	}
+
+	/**
+	 * Obtains the hand the equities are for.
+	 *
+	 * @return The hand the equities are for.
+	 */
+	public Hand hand() {
+		return hand;
+	}
+
+	/**
+	 * Obtains the equity of our hand against the specified hand.
+	 *
+	 * @param villain
+	 *            The opposing hand.
+	 * @return The share of the pot won on average, as a decimal, or
+	 *         {@link Double#NaN} if the hand was not calculated.
+	 */
+	public double equity(Hand villain) {
+		return equities[villain.index()];
+	}
+
+	/**
+	 * Obtains the standard error of the equity of our hand against the
+	 * specified hand, which is 0 if every board was evaluated.
+	 *
+	 * @param villain
+	 *            The opposing hand.
+	 * @return The standard error of the equity, as a decimal, or
+	 *         {@link Double#NaN} if the hand was not calculated.
+	 */
+	public double standardError(Hand villain) {
+		return standardErrors[villain.index()];
+	}
+
+	/**
+	 * Obtains the number of boards our hand was evaluated on against the
+	 * specified hand.
+	 *
+	 * @param villain
+	 *            The opposing hand.
+	 * @return The number of boards evaluated.
+	 */
+	public long samples(Hand villain) {
+		return samples[villain.index()];
+	}
+
+	/**
+	 * Obtains a copy of the equity of our hand against every hand, indexed
+	 * by {@link Hand#index()}.
+	 *
+	 * @return The equities, with {@link Double#NaN} for hands that were not
+	 *         calculated.
+	 */
+	public double[] equities() {
+		return equities.clone();
+	}
+
+	/**
+	 * Obtains the hands our equity was calculated against, in order of
+	 * {@link Hand#index()}.
+	 *
+	 * @return An unmodifiable list of the hands.
+	 */
+	public List<Hand> hands() {
+		List<Hand> hands = new ArrayList<>();
+		for (int i = 0; i < equities.length; i++) {
+			if (!Double.isNaN(equities[i])) {
+				hands.add(Hand.fromIndex(i));
+			}
+		}
+		return Collections.unmodifiableList(hands);
+	}
+
+	/**
+	 * Obtains whether every board was evaluated, making the equities exact.
+	 *
+	 * @return Whether the equities are exact.
+	 */
+	public boolean exact() {
+		return exact;
+	}
+
+}
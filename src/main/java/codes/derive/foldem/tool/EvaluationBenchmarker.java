@@ -1,8 +1,11 @@
 package codes.derive.foldem.tool;
 
+import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Deck;
 import codes.derive.foldem.Hand;
 import codes.derive.foldem.board.Board;
 import codes.derive.foldem.board.Boards;
@@ -14,12 +17,21 @@ import codes.derive.foldem.eval.Evaluator;
  */
 public class EvaluationBenchmarker implements Callable<Integer> {
 
+	/* The number of distinct hands and boards to evaluate. */
+	private static final int SAMPLES = 4096;
+
 	/* The evaluator to use. */
 	private final Evaluator evaluator;
 
 	/* The number of evaluations to perform */
 	private final int runs;
 
+	/* Whether to rank card masks rather than hands and boards. */
+	private final boolean masks;
+
+	/* The sum of every rank found by the last measurement. */
+	private volatile long checksum;
+
 	/**
 	 * Constructs a new {@link EvaluationBenchmarker} for the specified
 	 * {@link Evaluator}.
@@ -30,30 +42,78 @@ public class EvaluationBenchmarker implements Callable<Integer> {
 	 *            The number of evaluations to perform for a measurement.
 	 */
 	public EvaluationBenchmarker(Evaluator evaluator, int runs) {
+		this(evaluator, runs, false);
+	}
+
+	/**
+	 * Constructs a new {@link EvaluationBenchmarker} for the specified
+	 * {@link Evaluator}, optionally measuring {@link Evaluator#rank(long)}
+	 * instead of {@link Evaluator#rank(Hand, Board)}.
+	 * 
+	 * @param evaluator
+	 *            The evaluator to use.
+	 * @param runs
+	 *            The number of evaluations to perform for a measurement.
+	 * @param masks
+	 *            Whether to rank the cards as 52-bit masks rather than as
+	 *            hands and boards.
+	 */
+	public EvaluationBenchmarker(Evaluator evaluator, int runs, boolean masks) {
 		this.evaluator = evaluator;
 		this.runs = runs;
+		this.masks = masks;
 	}
 
 	@Override
 	public Integer call() {
 
-		// Create a hand and board to run our evaluations on.
-		Hand hand = new Hand("AcAs");
-		Board board = Boards.board("AdAhKsKcKd");
+		// Create a set of random hands and boards to run our evaluations on,
+		// using a fixed seed so that measurements can be compared.
+		Random random = new Random(0);
+		Hand[] hands = new Hand[SAMPLES];
+		Board[] boards = new Board[SAMPLES];
+		long[] cards = new long[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			Deck deck = new Deck().shuffle(random);
+			hands[i] = new Hand(deck.pop(), deck.pop());
+			boards[i] = Boards.river(deck);
+			cards[i] = Card.mask(hands[i].cards()) | Card.mask(boards[i].cards());
+		}
 
 		// Record the start time.
 		long start = System.nanoTime();
 
-		// Begin running evaluations.
-		for (int i = 0; i < runs; i++) {
-			evaluator.rank(hand, board);
+		// Begin running evaluations, summing their ranks so that the JIT can't
+		// remove the calls as dead code.
+		long sum = 0L;
+		if (masks) {
+			for (int i = 0; i < runs; i++) {
+				sum += evaluator.rank(cards[i % SAMPLES]);
+			}
+		} else {
+			for (int i = 0; i < runs; i++) {
+				sum += evaluator.rank(hands[i % SAMPLES], boards[i % SAMPLES]);
+			}
 		}
 
 		// Measure how much time passed.
-		long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+		long elapsed = Math.max(System.nanoTime() - start, 1);
+
+		// Publish the sum of the ranks, which makes it observable.
+		checksum = sum;
 
 		// Return the number of evaluations per second.
-		return (int) (runs / elapsed);
+		return (int) (runs * (double) TimeUnit.SECONDS.toNanos(1) / elapsed);
+	}
+
+	/**
+	 * Obtains the sum of every rank found by the last measurement, which can
+	 * be used to check that two evaluators agreed on the hands ranked.
+	 * 
+	 * @return The sum of the ranks, or 0 if nothing was measured yet.
+	 */
+	public long checksum() {
+		return checksum;
 	}
 
 }
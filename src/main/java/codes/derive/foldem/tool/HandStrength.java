@@ -0,0 +1,277 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Constants;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.board.Board;
+import codes.derive.foldem.board.Street;
+import codes.derive.foldem.eval.Evaluator;
+
+/**
+ * Ranks every hand that can be dealt on a board once, so the strength of a
+ * hand among every hand an opponent could hold can be found without ranking
+ * them again.
+ *
+ * <p>
+ * Hands are kept sorted from the weakest to the strongest. The percentile of
+ * a hand is found with a binary search, and the opposing hands sharing one of
+ * its cards, which it can never face, are taken away by visiting the at most
+ * 101 hands containing them.
+ * </p>
+ *
+ * <p>
+ * {@link #of(Board)} keeps the strengths of recently used boards in a fixed
+ * number of slots, each holding a single board. When a board is stored in a
+ * slot already holding a different board the old board is evicted. Instances
+ * can be shared between any number of threads.
+ * </p>
+ */
+public class HandStrength {
+
+	/* The number of bits used to select a slot of the cache. */
+	private static final int SLOT_BITS = 8;
+
+	/* The strengths of recently used boards, using at most 3MB of memory. */
+	private static final AtomicReferenceArray<HandStrength> CACHE = new AtomicReferenceArray<>(1 << SLOT_BITS);
+
+	/* The board the hands are ranked on. */
+	private final Board board;
+
+	/* The cards on the board. */
+	private final long cards;
+
+	/* The rank of each hand on the board, or -1 if it shares a card with it. */
+	private final int[] ranks = new int[Constants.HAND_COMBINATIONS];
+
+	/* The index of every hand that can be dealt, from weakest to strongest. */
+	private final int[] order;
+
+	/**
+	 * Constructs a new {@link HandStrength}, ranking every hand that can be
+	 * dealt on the specified board with the specified evaluator.
+	 *
+	 * @param board
+	 *            The board to rank hands on, with at least three cards.
+	 * @param evaluator
+	 *            The evaluator to rank hands with.
+	 */
+	public HandStrength(Board board, Evaluator evaluator) {
+		if (board.cards().size() < Street.FLOP.cardCount()) {
+			throw new IllegalArgumentException("The board must have at least three cards");
+		}
+		this.board = board;
+		this.cards = Card.mask(board.cards());
+		long[] sorted = new long[Constants.HAND_COMBINATIONS];
+		int count = 0;
+		for (int i = 0; i < ranks.length; i++) {
+			long hand = Card.mask(Hand.fromIndex(i).cards());
+			if ((hand & cards) != 0) {
+				ranks[i] = -1;
+				continue;
+			}
+			ranks[i] = evaluator.rank(hand | cards);
+			sorted[count++] = ((long) -ranks[i] << 32) | i;
+		}
+
+		/*
+		 * Higher ranks are weaker, so sort by negated rank to put the weakest
+		 * hands first.
+		 */
+		Arrays.sort(sorted, 0, count);
+		this.order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = (int) sorted[i];
+		}
+	}
+
+	/**
+	 * Obtains the strengths of the hands on the specified board ranked with
+	 * {@link EquityCalculationBuilder#DEFAULT_EVALUATOR}, reusing them if the
+	 * board was used recently.
+	 *
+	 * @param board
+	 *            The board to rank hands on, with at least three cards.
+	 * @return The strengths of the hands on the board.
+	 */
+	public static HandStrength of(Board board) {
+		long cards = Card.mask(board.cards());
+		int slot = (int) ((cards * 0x9E3779B97F4A7C15L) >>> (64 - SLOT_BITS));
+		HandStrength strength = CACHE.get(slot);
+		if (strength == null || strength.cards != cards) {
+			strength = new HandStrength(board, EquityCalculationBuilder.DEFAULT_EVALUATOR);
+			CACHE.set(slot, strength);
+		}
+		return strength;
+	}
+
+	/**
+	 * Obtains the board hands are ranked on.
+	 *
+	 * @return The board.
+	 */
+	public Board board() {
+		return board;
+	}
+
+	/**
+	 * Obtains the rank of the specified hand on our board.
+	 *
+	 * @param hand
+	 *            The hand.
+	 * @return The rank given by the evaluator, lower being stronger.
+	 */
+	public int rank(Hand hand) {
+		return ranks[live(hand)];
+	}
+
+	/**
+	 * Obtains the strength of the specified hand among every hand an opponent
+	 * could hold, which are the hands that do not share a card with it or
+	 * the board.
+	 *
+	 * @param hand
+	 *            The hand.
+	 * @return The fraction of opposing hands the hand beats, counting ties
+	 *         as half, as a decimal.
+	 */
+	public double percentile(Hand hand) {
+		int[] counts = counts(live(hand));
+		return (counts[0] + counts[1] / 2.0) / (counts[0] + counts[1] + counts[2]);
+	}
+
+	/**
+	 * Obtains every hand an opponent could hold that beats or ties the
+	 * specified hand, from the strongest to the weakest.
+	 *
+	 * @param hand
+	 *            The hand.
+	 * @return An unmodifiable list of the hands that beat or tie the hand.
+	 */
+	public List<Hand> beating(Hand hand) {
+		int index = live(hand);
+		long mask = Card.mask(hand.cards());
+		List<Hand> hands = new ArrayList<>();
+		for (int i = order.length - 1; i >= 0 && ranks[order[i]] <= ranks[index]; i--) {
+			Hand other = Hand.fromIndex(order[i]);
+			if ((Card.mask(other.cards()) & mask) == 0) {
+				hands.add(other);
+			}
+		}
+		return Collections.unmodifiableList(hands);
+	}
+
+	/**
+	 * Counts the opposing hands that the hand with the specified index beats,
+	 * ties and loses to.
+	 *
+	 * @param index
+	 *            The index of the hand.
+	 * @return The number of hands beaten, tied with and lost to.
+	 */
+	private int[] counts(int index) {
+		int rank = ranks[index];
+		int weaker = search(rank), stronger = order.length - search(rank - 1);
+		int[] counts = { weaker, order.length - weaker - stronger, stronger };
+
+		/*
+		 * Take away the hands sharing a card with ours, including our own.
+		 */
+		Hand hand = Hand.fromIndex(index);
+		int[] cards = new int[2];
+		int n = 0;
+		for (Card card : hand.cards()) {
+			cards[n++] = card.index();
+		}
+		for (int i = 0; i < cards.length; i++) {
+			for (int other = 0; other < Constants.DECK_SIZE; other++) {
+				if (other == cards[0] || other == cards[1] || (this.cards & (1L << other)) != 0) {
+					continue;
+				}
+				int high = Math.max(cards[i], other), low = Math.min(cards[i], other);
+				int shared = ranks[high * (high - 1) / 2 + low];
+				counts[shared > rank ? 0 : shared == rank ? 1 : 2]--;
+			}
+		}
+		counts[1]--;
+		return counts;
+	}
+
+	/**
+	 * Finds the number of hands weaker than the specified rank.
+	 *
+	 * @param rank
+	 *            The rank.
+	 * @return The number of hands with a higher rank.
+	 */
+	private int search(int rank) {
+		int low = 0, high = order.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (ranks[order[middle]] > rank) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Finds the index of the specified hand, making sure it can be dealt on
+	 * our board.
+	 *
+	 * @param hand
+	 *            The hand.
+	 * @return The index of the hand.
+	 */
+	private int live(Hand hand) {
+		int index = hand.index();
+		if (ranks[index] < 0) {
+			throw new IllegalArgumentException("The hand shares a card with the board");
+		}
+		return index;
+	}
+
+	/**
+	 * Obtains the rank of each hand on our board, by index.
+	 *
+	 * @return The rank of each hand, or -1 for hands sharing a card with the
+	 *         board.
+	 */
+	int[] ranks() {
+		return ranks;
+	}
+
+	/**
+	 * Obtains the index of every hand that can be dealt on our board, from
+	 * weakest to strongest.
+	 *
+	 * @return The index of every hand.
+	 */
+	int[] order() {
+		return order;
+	}
+
+}
@@ -0,0 +1,359 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.tool;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Constants;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.Range;
+
+/**
+ * Samples one hand from each of a set of ranges at once, so that no two hands
+ * share a card and every set of hands is drawn with a probability
+ * proportional to the product of the weights of its hands.
+ *
+ * <p>
+ * Each range is reduced to the hands that do not conflict with the board or
+ * dead cards and given an alias table, so a hand is drawn in constant time.
+ * Hands are drawn one range at a time, drawing again from a range until the
+ * hand does not conflict with the hands already drawn. As removing cards
+ * changes how much of each range is left, the whole set is then accepted with
+ * a probability proportional to the weight left in every range, which keeps
+ * the sets unbiased.
+ * </p>
+ *
+ * <p>
+ * Ranges that can never be dealt together are found when the sampler is
+ * created with a bounded search for a set of hands with no card in common.
+ * If the search runs out before finding an answer, sampling gives up once too
+ * many sets in a row have been discarded instead.
+ * </p>
+ *
+ * <p>
+ * Instances can be shared between threads, and count how many hands they
+ * draw and discard so the rejection rate of a calculation can be reported.
+ * </p>
+ */
+class JointRangeSampler {
+
+	/* The most hands tried when searching for a set that can be dealt. */
+	private static final int SEARCH_LIMIT = 1 << 20;
+
+	/* The most sets of hands discarded in a row before sampling gives up. */
+	private static final int REJECTION_LIMIT = 1 << 20;
+
+	/* The cards in each hand that can be dealt, for every range. */
+	private final long[][] hands;
+
+	/* The probability of keeping each slot of the alias table of a range. */
+	private final double[][] probabilities;
+
+	/* The alternative hand of each slot of the alias table of a range. */
+	private final int[][] aliases;
+
+	/* The total weight of the hands that can be dealt in each range. */
+	private final double[] totals;
+
+	/* The total weight of the hands containing each card, for every range. */
+	private final double[][] cardWeights;
+
+	/* The weight of the hand made of each pair of cards, for every range. */
+	private final double[][] pairWeights;
+
+	/* The number of hands drawn and the number of them discarded. */
+	private final LongAdder draws = new LongAdder(), rejections = new LongAdder();
+
+	/**
+	 * Constructs a new {@link JointRangeSampler}.
+	 *
+	 * @param ranges
+	 *            The ranges to sample hands from.
+	 * @param dealt
+	 *            A mask containing the cards that cannot be in any hand.
+	 * @throws IllegalArgumentException
+	 *             If a range has no hands that can be dealt, or no set of
+	 *             hands from the ranges can be dealt together.
+	 */
+	JointRangeSampler(Range[] ranges, long dealt) {
+		this.hands = new long[ranges.length][];
+		this.probabilities = new double[ranges.length][];
+		this.aliases = new int[ranges.length][];
+		this.totals = new double[ranges.length];
+		this.cardWeights = new double[ranges.length][Constants.DECK_SIZE];
+		this.pairWeights = new double[ranges.length][Constants.DECK_SIZE * Constants.DECK_SIZE];
+		for (int i = 0; i < ranges.length; i++) {
+
+			/*
+			 * Find the hands in our range that can be dealt, leaving out any
+			 * defined more than once.
+			 */
+			long[] masks = new long[ranges[i].all().size()];
+			double[] weights = new double[masks.length];
+			boolean[] found = new boolean[Constants.HAND_COMBINATIONS];
+			int count = 0;
+			for (Hand hand : ranges[i].all()) {
+				long mask = Card.mask(hand.cards());
+				if ((mask & dealt) != 0 || found[hand.index()]) {
+					continue;
+				}
+				found[hand.index()] = true;
+				double weight = ranges[i].weight(hand);
+				int a = Long.numberOfTrailingZeros(mask), b = 63 - Long.numberOfLeadingZeros(mask);
+				masks[count] = mask;
+				weights[count++] = weight;
+				totals[i] += weight;
+				cardWeights[i][a] += weight;
+				cardWeights[i][b] += weight;
+				pairWeights[i][a * Constants.DECK_SIZE + b] += weight;
+			}
+			if (count == 0) {
+				throw new IllegalArgumentException("A provided range does not have any hands that can be dealt");
+			}
+			hands[i] = Arrays.copyOf(masks, count);
+			alias(i, weights, count);
+		}
+
+		/*
+		 * Make sure some set of hands can be dealt together, trying the
+		 * smallest ranges first as they run out of hands soonest.
+		 */
+		Integer[] order = new Integer[ranges.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Integer.compare(hands[a].length, hands[b].length));
+		if (!dealable(order, 0, 0L, new int[] { SEARCH_LIMIT })) {
+			throw new IllegalArgumentException("These ranges have no hands that can be dealt together");
+		}
+	}
+
+	/**
+	 * Searches for a hand from each of the remaining ranges so that no two
+	 * hands share a card.
+	 *
+	 * @param order
+	 *            The offsets of the ranges, in the order to search them.
+	 * @param depth
+	 *            The number of ranges already given a hand.
+	 * @param used
+	 *            A mask containing the cards in the hands given so far.
+	 * @param budget
+	 *            The number of hands left to try, shared by every call.
+	 * @return <code>false</code> if no such set of hands exists, otherwise
+	 *         <code>true</code>, including when the budget runs out.
+	 */
+	private boolean dealable(Integer[] order, int depth, long used, int[] budget) {
+		if (depth == order.length || --budget[0] < 0) {
+			return true;
+		}
+		for (long hand : hands[order[depth]]) {
+			if ((hand & used) == 0 && dealable(order, depth + 1, used | hand, budget)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Builds the alias table of the specified range using Vose's method.
+	 *
+	 * @param range
+	 *            The offset of the range.
+	 * @param weights
+	 *            The weight of each hand that can be dealt.
+	 * @param count
+	 *            The number of hands that can be dealt.
+	 */
+	private void alias(int range, double[] weights, int count) {
+		double[] probability = new double[count];
+		int[] alias = new int[count];
+		int[] small = new int[count], large = new int[count];
+		int smalls = 0, larges = 0;
+		for (int i = 0; i < count; i++) {
+			probability[i] = weights[i] * count / totals[range];
+			if (probability[i] < 1.0) {
+				small[smalls++] = i;
+			} else {
+				large[larges++] = i;
+			}
+		}
+		while (smalls > 0 && larges > 0) {
+			int less = small[--smalls], more = large[--larges];
+			alias[less] = more;
+			probability[more] -= 1.0 - probability[less];
+			if (probability[more] < 1.0) {
+				small[smalls++] = more;
+			} else {
+				large[larges++] = more;
+			}
+		}
+
+		/*
+		 * Whatever is left over is only short of 1 due to rounding.
+		 */
+		while (larges > 0) {
+			probability[large[--larges]] = 1.0;
+		}
+		while (smalls > 0) {
+			probability[small[--smalls]] = 1.0;
+		}
+		probabilities[range] = probability;
+		aliases[range] = alias;
+	}
+
+	/**
+	 * Samples a hand from every range so that no two hands share a card.
+	 *
+	 * @param random
+	 *            The random number generator to sample with.
+	 * @param out
+	 *            The array to store the cards in the hand sampled from each
+	 *            range in.
+	 * @throws IllegalArgumentException
+	 *             If too many sets of hands in a row could not be dealt
+	 *             together.
+	 */
+	void sample(SplittableRandom random, long[] out) {
+		long drawn = 0, discarded = 0;
+		for (int attempts = 0;; attempts++) {
+			if (attempts == REJECTION_LIMIT) {
+				throw new IllegalArgumentException("These ranges have no hands that can be dealt together");
+			}
+			long used = 0L;
+			double acceptance = 1.0;
+			int i = 0;
+			for (; i < hands.length; i++) {
+
+				/*
+				 * Give up on this set if the hands drawn so far leave nothing
+				 * in this range.
+				 */
+				double available = available(i, used);
+				if (available <= totals[i] * 1e-12) {
+					break;
+				}
+				acceptance *= available / totals[i];
+
+				/*
+				 * Draw from the range until we have a hand that does not
+				 * conflict with the hands drawn so far.
+				 */
+				long hand;
+				while (((hand = draw(i, random)) & used) != 0) {
+					drawn++;
+					discarded++;
+				}
+				drawn++;
+				out[i] = hand;
+				used |= hand;
+			}
+			if (i == hands.length && random.nextDouble() < acceptance) {
+				break;
+			}
+			discarded += i;
+		}
+		draws.add(drawn);
+		rejections.add(discarded);
+	}
+
+	/**
+	 * Draws a hand from the alias table of the specified range.
+	 *
+	 * @param range
+	 *            The offset of the range.
+	 * @param random
+	 *            The random number generator to draw with.
+	 * @return The cards in the hand drawn.
+	 */
+	private long draw(int range, SplittableRandom random) {
+		int slot = random.nextInt(hands[range].length);
+		if (random.nextDouble() >= probabilities[range][slot]) {
+			slot = aliases[range][slot];
+		}
+		return hands[range][slot];
+	}
+
+	/**
+	 * Calculates the total weight of the hands in the specified range that do
+	 * not contain any of the specified cards.
+	 *
+	 * @param range
+	 *            The offset of the range.
+	 * @param used
+	 *            A mask containing the cards already in use.
+	 * @return The total weight of the hands left in the range.
+	 */
+	private double available(int range, long used) {
+		double available = totals[range];
+		for (long a = used; a != 0; a &= a - 1) {
+			int first = Long.numberOfTrailingZeros(a);
+			available -= cardWeights[range][first];
+
+			/*
+			 * Hands made of two used cards were taken away twice.
+			 */
+			for (long b = a & (a - 1); b != 0; b &= b - 1) {
+				available += pairWeights[range][first * Constants.DECK_SIZE + Long.numberOfTrailingZeros(b)];
+			}
+		}
+		return available;
+	}
+
+	/**
+	 * Obtains the number of ranges this sampler draws hands from.
+	 *
+	 * @return The number of ranges.
+	 */
+	int ranges() {
+		return hands.length;
+	}
+
+	/**
+	 * Obtains the number of hands drawn by this sampler.
+	 *
+	 * @return The number of hands drawn.
+	 */
+	long draws() {
+		return draws.sum();
+	}
+
+	/**
+	 * Obtains the number of hands drawn by this sampler that were discarded
+	 * because they could not be dealt together with the other hands drawn.
+	 *
+	 * @return The number of hands discarded.
+	 */
+	long rejections() {
+		return rejections.sum();
+	}
+
+	/**
+	 * Obtains the fraction of the hands drawn by this sampler that were
+	 * discarded.
+	 *
+	 * @return The rejection rate, as a decimal.
+	 */
+	double rejectionRate() {
+		long draws = draws();
+		return draws == 0 ? 0.0 : (double) rejections() / draws;
+	}
+
+}
@@ -0,0 +1,477 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Constants;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.eval.BitmaskEvaluator;
+import codes.derive.foldem.eval.Evaluator;
+
+/**
+ * A table of the exact preflop all-in equity of every pair of hands heads up,
+ * counted over every board that can be dealt to them.
+ *
+ * <p>
+ * Pairs of hands that only differ by a permutation of suits have the same
+ * equity, so only one pair of each kind is stored. Each entry holds the pair
+ * of hands it stands for followed by the number of boards the first hand
+ * wins and splits, as big-endian ints, with entries sorted by their pair of
+ * hands so that they can be found with a binary search. Tables are read
+ * through a {@link java.nio.MappedByteBuffer} so only the entries that are
+ * looked up are ever loaded.
+ * </p>
+ *
+ * <p>
+ * The table shipped with Fold'em is used by {@link EquityCalculationBuilder}
+ * for two hands with no board and no dead cards, and can be created with
+ * {@link #main(String...)}.
+ * </p>
+ */
+public class PreflopEquityTable {
+
+	/* The number of boards that can be dealt preflop to two hands. */
+	public static final int BOARDS = 1712304;
+
+	/* The size of an entry: the pair of hands, wins and splits. */
+	private static final int ENTRY_SIZE = 3 * Integer.BYTES;
+
+	/* The flag set on a pair of hands when the hands were swapped. */
+	private static final int SWAPPED = 1 << 24;
+
+	/* A rank worse than any hand, given to hands that can't be dealt. */
+	private static final int UNDEALT = 1 << 20;
+
+	/* Every permutation of the suits. */
+	private static final int[][] PERMUTATIONS = permutations();
+
+	/* The entries of the table. */
+	private final ByteBuffer entries;
+
+	/* The number of entries in the table. */
+	private final int size;
+
+	/**
+	 * Constructs a new {@link PreflopEquityTable} from the specified table
+	 * file, mapping it into memory.
+	 *
+	 * @param path
+	 *            The path of the table file.
+	 * @throws IOException
+	 *             If the table file could not be mapped.
+	 */
+	public PreflopEquityTable(Path path) throws IOException {
+		this(map(path));
+	}
+
+	/**
+	 * Constructs a new {@link PreflopEquityTable} from the specified entries.
+	 *
+	 * @param entries
+	 *            The entries of the table.
+	 */
+	private PreflopEquityTable(ByteBuffer entries) {
+		if (entries.capacity() % ENTRY_SIZE != 0) {
+			throw new IllegalArgumentException("Malformed preflop equity table");
+		}
+		this.entries = entries;
+		this.size = entries.capacity() / ENTRY_SIZE;
+	}
+
+	/**
+	 * Maps the specified table file into memory.
+	 *
+	 * @param path
+	 *            The path of the table file.
+	 * @return The mapped table file.
+	 * @throws IOException
+	 *             If the table file could not be mapped.
+	 */
+	private static ByteBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Obtains the table shipped with Fold'em, which is loaded the first time
+	 * this method is called.
+	 *
+	 * @return The table shipped with Fold'em, or null if Fold'em was built
+	 *         without one.
+	 */
+	public static PreflopEquityTable shipped() {
+		return Shipped.TABLE;
+	}
+
+	/**
+	 * Obtains the number of boards on which the first hand specified beats the
+	 * second.
+	 *
+	 * @param a
+	 *            The first hand.
+	 * @param b
+	 *            The second hand.
+	 * @return The number of boards the first hand wins, out of
+	 *         {@link #BOARDS}.
+	 */
+	public int wins(Hand a, Hand b) {
+		return counts(Card.mask(a.cards()), Card.mask(b.cards()))[0];
+	}
+
+	/**
+	 * Obtains the number of boards on which the specified hands split the pot.
+	 *
+	 * @param a
+	 *            The first hand.
+	 * @param b
+	 *            The second hand.
+	 * @return The number of boards the hands split, out of {@link #BOARDS}.
+	 */
+	public int splits(Hand a, Hand b) {
+		return counts(Card.mask(a.cards()), Card.mask(b.cards()))[1];
+	}
+
+	/**
+	 * Obtains the share of the pot the first hand specified wins on average
+	 * against the second.
+	 *
+	 * @param a
+	 *            The first hand.
+	 * @param b
+	 *            The second hand.
+	 * @return The equity of the first hand, as a decimal.
+	 */
+	public double equity(Hand a, Hand b) {
+		int[] counts = counts(Card.mask(a.cards()), Card.mask(b.cards()));
+		return (counts[0] + counts[1] / 2.0) / BOARDS;
+	}
+
+	/**
+	 * Finds the number of boards the first of the specified hands wins, and
+	 * the number of boards they split.
+	 *
+	 * @param a
+	 *            A mask containing the cards in the first hand.
+	 * @param b
+	 *            A mask containing the cards in the second hand.
+	 * @return The number of boards won by the first hand followed by the
+	 *         number of boards split.
+	 */
+	int[] counts(long a, long b) {
+		if ((a & b) != 0) {
+			throw new IllegalArgumentException("Hands cannot have a card in common");
+		}
+		int key = key(a, b);
+
+		/*
+		 * Find our pair of hands, the counts are for the other hand if they
+		 * had to be swapped.
+		 */
+		int low = 0, high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int offset = middle * ENTRY_SIZE, found = entries.getInt(offset);
+			if (found < (key & ~SWAPPED)) {
+				low = middle + 1;
+			} else if (found > (key & ~SWAPPED)) {
+				high = middle - 1;
+			} else {
+				int wins = entries.getInt(offset + Integer.BYTES);
+				int splits = entries.getInt(offset + 2 * Integer.BYTES);
+				if ((key & SWAPPED) != 0) {
+					wins = BOARDS - wins - splits;
+				}
+				return new int[] { wins, splits };
+			}
+		}
+		throw new IllegalStateException("Preflop equity table is incomplete");
+	}
+
+	/**
+	 * Finds the key of the specified pair of hands, which is the same for
+	 * every pair of hands that only differs by a permutation of suits.
+	 *
+	 * <p>
+	 * Both hands are written as their highest card index followed by their
+	 * lowest, and the key is the smallest pair of hands that can be made by
+	 * permuting the suits and putting the smallest hand first, flagged with
+	 * {@link #SWAPPED} if the hands had to be swapped.
+	 * </p>
+	 *
+	 * @param a
+	 *            A mask containing the cards in the first hand.
+	 * @param b
+	 *            A mask containing the cards in the second hand.
+	 * @return The key of the pair of hands.
+	 */
+	static int key(long a, long b) {
+		int a1 = Long.numberOfTrailingZeros(a), a2 = 63 - Long.numberOfLeadingZeros(a);
+		int b1 = Long.numberOfTrailingZeros(b), b2 = 63 - Long.numberOfLeadingZeros(b);
+		int best = Integer.MAX_VALUE;
+		for (int[] permutation : PERMUTATIONS) {
+			int x = hand(permutation, a1, a2), y = hand(permutation, b1, b2);
+			int key = x <= y ? x << 12 | y : y << 12 | x | SWAPPED;
+			if ((key & ~SWAPPED) < (best & ~SWAPPED)) {
+				best = key;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Writes a hand with its suits permuted as its highest card index followed
+	 * by its lowest.
+	 *
+	 * @param permutation
+	 *            The suit each suit is mapped to.
+	 * @param first
+	 *            The index of the first card.
+	 * @param second
+	 *            The index of the second card.
+	 * @return The permuted hand.
+	 */
+	private static int hand(int[] permutation, int first, int second) {
+		first = permutation[first / Card.LABEL.length] * Card.LABEL.length + first % Card.LABEL.length;
+		second = permutation[second / Card.LABEL.length] * Card.LABEL.length + second % Card.LABEL.length;
+		return Math.max(first, second) << 6 | Math.min(first, second);
+	}
+
+	/**
+	 * Creates every permutation of the suits.
+	 *
+	 * @return Every permutation of the suits.
+	 */
+	private static int[][] permutations() {
+		int[][] permutations = new int[24][];
+		int count = 0;
+		for (int a = 0; a < 4; a++) {
+			for (int b = 0; b < 4; b++) {
+				for (int c = 0; c < 4; c++) {
+					int d = 6 - a - b - c;
+					if (a != b && a != c && b != c && d != a && d != b && d != c) {
+						permutations[count++] = new int[] { a, b, c, d };
+					}
+				}
+			}
+		}
+		return permutations;
+	}
+
+	/**
+	 * Calculates the exact equity of every pair of hands and writes the table
+	 * to the specified file.
+	 *
+	 * <p>
+	 * Rather than enumerating the boards of every pair of hands, every board
+	 * is dealt once and every hand is ranked on it, which are then compared
+	 * for each pair of hands in the table.
+	 * </p>
+	 *
+	 * @param args
+	 *            The path of the file to write.
+	 * @throws IOException
+	 *             If the table could not be written.
+	 */
+	public static void main(String... args) throws IOException {
+
+		/*
+		 * Find one pair of hands of each kind, which the keys describe.
+		 */
+		TreeSet<Integer> found = new TreeSet<>();
+		for (int a1 = 0; a1 < Constants.DECK_SIZE; a1++) {
+			for (int a2 = a1 + 1; a2 < Constants.DECK_SIZE; a2++) {
+				for (int b1 = 0; b1 < Constants.DECK_SIZE; b1++) {
+					for (int b2 = b1 + 1; b2 < Constants.DECK_SIZE; b2++) {
+						long a = 1L << a1 | 1L << a2, b = 1L << b1 | 1L << b2;
+						if ((a & b) == 0) {
+							found.add(key(a, b) & ~SWAPPED);
+						}
+					}
+				}
+			}
+		}
+		int[] keys = found.stream().mapToInt(Integer::intValue).toArray();
+
+		/*
+		 * Deal every board by its lowest card in parallel.
+		 */
+		long[] counts = IntStream.range(0, Constants.DECK_SIZE).parallel()
+				.mapToObj(first -> count(keys, first))
+				.reduce(PreflopEquityTable::merge).get();
+
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(Paths.get(args[0])))) {
+			ByteBuffer buffer = ByteBuffer.allocate(keys.length * ENTRY_SIZE);
+			for (int i = 0; i < keys.length; i++) {
+				buffer.putInt(keys[i]).putInt((int) (counts[i] >>> 32)).putInt((int) counts[i]);
+			}
+			out.write(buffer.array());
+		}
+	}
+
+	/**
+	 * Counts how many boards the first hand of each pair wins and splits,
+	 * for every board whose lowest card is the specified card.
+	 *
+	 * @param keys
+	 *            The keys of the pairs of hands.
+	 * @param first
+	 *            The index of the lowest card on the boards.
+	 * @return The number of boards won by the first hand of each pair in the
+	 *         high 32 bits, and the number of boards split in the low 32
+	 *         bits.
+	 */
+	private static long[] count(int[] keys, int first) {
+		Evaluator evaluator = new BitmaskEvaluator();
+		long[] counts = new long[keys.length];
+
+		/*
+		 * Give every hand an offset, and find the offsets of the hands in each
+		 * pair.
+		 */
+		long[] hands = new long[Constants.DECK_SIZE * (Constants.DECK_SIZE - 1) / 2];
+		int[] offsets = new int[1 << 12];
+		for (int a = 0, offset = 0; a < Constants.DECK_SIZE; a++) {
+			for (int b = a + 1; b < Constants.DECK_SIZE; b++, offset++) {
+				hands[offset] = 1L << a | 1L << b;
+				offsets[a << 6 | b] = offset;
+			}
+		}
+		int[] firsts = new int[keys.length], seconds = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			firsts[i] = offset(offsets, keys[i] >>> 12);
+			seconds[i] = offset(offsets, keys[i] & 0xFFF);
+		}
+
+		/*
+		 * Rank every hand on each board. Hands that can't be dealt with the
+		 * board are given a rank that neither wins nor splits, which is
+		 * different depending on which side of the pair they are, so that
+		 * every pair can be counted without branching.
+		 */
+		int[] ranks = new int[hands.length], others = new int[hands.length];
+		for (int c2 = first + 1; c2 < Constants.DECK_SIZE; c2++) {
+			for (int c3 = c2 + 1; c3 < Constants.DECK_SIZE; c3++) {
+				for (int c4 = c3 + 1; c4 < Constants.DECK_SIZE; c4++) {
+					for (int c5 = c4 + 1; c5 < Constants.DECK_SIZE; c5++) {
+						long board = 1L << first | 1L << c2 | 1L << c3 | 1L << c4 | 1L << c5;
+						for (int i = 0; i < hands.length; i++) {
+							if ((hands[i] & board) != 0) {
+								ranks[i] = UNDEALT;
+								others[i] = -UNDEALT;
+							} else {
+								ranks[i] = others[i] = evaluator.rank(hands[i] | board);
+							}
+						}
+						for (int i = 0; i < keys.length; i++) {
+							int a = ranks[firsts[i]], b = others[seconds[i]];
+							counts[i] += (long) ((a - b) >>> 31) << 32 | (a == b ? 1 : 0);
+						}
+					}
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Finds the offset of a hand written as its highest card index followed
+	 * by its lowest.
+	 *
+	 * @param offsets
+	 *            The offset of each hand, indexed by its lowest card index
+	 *            followed by its highest.
+	 * @param hand
+	 *            The hand.
+	 * @return The offset of the hand.
+	 */
+	private static int offset(int[] offsets, int hand) {
+		return offsets[(hand & 0x3F) << 6 | hand >>> 6];
+	}
+
+	/**
+	 * Adds the counts of two sets of boards together.
+	 *
+	 * @param a
+	 *            The counts of the first set of boards, which are added to.
+	 * @param b
+	 *            The counts of the second set of boards.
+	 * @return The counts of both sets of boards.
+	 */
+	private static long[] merge(long[] a, long[] b) {
+		for (int i = 0; i < a.length; i++) {
+			a[i] += b[i];
+		}
+		return a;
+	}
+
+	/**
+	 * Holds the table shipped with Fold'em so that it is only loaded once it
+	 * is needed.
+	 */
+	private static class Shipped {
+
+		/* The table shipped with Fold'em, or null if there isn't one. */
+		private static final PreflopEquityTable TABLE = load();
+
+		/**
+		 * Loads the table shipped with Fold'em, mapping it into memory if it
+		 * is a file and reading it otherwise.
+		 *
+		 * @return The table shipped with Fold'em, or null if there isn't one.
+		 */
+		private static PreflopEquityTable load() {
+			URL url = PreflopEquityTable.class.getResource("preflop_equities");
+			if (url == null) {
+				return null;
+			}
+			try {
+				if (url.getProtocol().equals("file")) {
+					return new PreflopEquityTable(Paths.get(url.toURI()));
+				}
+				ByteArrayOutputStream data = new ByteArrayOutputStream();
+				try (InputStream in = url.openStream()) {
+					byte[] chunk = new byte[8192];
+					for (int read; (read = in.read(chunk)) != -1;) {
+						data.write(chunk, 0, read);
+					}
+				}
+				return new PreflopEquityTable(ByteBuffer.wrap(data.toByteArray()));
+			} catch (IOException | URISyntaxException e) {
+				throw new RuntimeException("Could not load preflop_equities resource, "
+						+ "make sure Foldem was built correctly", e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,253 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.tool;
+
+import java.util.Arrays;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Constants;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.Range;
+import codes.derive.foldem.board.Board;
+import codes.derive.foldem.eval.Evaluator;
+
+/**
+ * Calculates the exact equity of ranges against each other on a complete
+ * board without comparing every pair of their hands.
+ *
+ * <p>
+ * Every hand that can be dealt on the board is ranked once and sorted, using
+ * the hands cached by {@link HandStrength#of(Board)} for evaluators that rank
+ * hands as {@link codes.derive.foldem.eval.DefaultEvaluator} does. Ranges are then compared with a single sweep from
+ * the weakest hand to the strongest, keeping a running total of the weight of
+ * the opposing hands passed so far. Opposing hands that share a card with a
+ * hand are taken away using running totals for each card, adding back the
+ * opposing hand made of both of its cards, so each query takes time linear in
+ * the number of hands rather than in the number of pairs.
+ * </p>
+ *
+ * <p>
+ * Instances can be shared between threads.
+ * </p>
+ */
+public class RiverShowdown {
+
+	/* The higher and lower card index of each hand, by index. */
+	private static final int[] HIGH = new int[Constants.HAND_COMBINATIONS], LOW = new int[Constants.HAND_COMBINATIONS];
+
+	static {
+		for (int i = 0; i < HIGH.length; i++) {
+			long mask = Card.mask(Hand.fromIndex(i).cards());
+			LOW[i] = Long.numberOfTrailingZeros(mask);
+			HIGH[i] = 63 - Long.numberOfLeadingZeros(mask);
+		}
+	}
+
+	/* The board the hands are compared on. */
+	private final Board board;
+
+	/* The rank of each hand on the board, or -1 if it shares a card with it. */
+	private final int[] ranks;
+
+	/* The index of every hand that can be dealt, from weakest to strongest. */
+	private final int[] order;
+
+	/**
+	 * Constructs a new {@link RiverShowdown} for the specified board, ranking
+	 * hands with {@link EquityCalculationBuilder#DEFAULT_EVALUATOR}.
+	 *
+	 * @param board
+	 *            The complete board to compare hands on.
+	 */
+	public RiverShowdown(Board board) {
+		this(board, EquityCalculationBuilder.DEFAULT_EVALUATOR);
+	}
+
+	/**
+	 * Constructs a new {@link RiverShowdown} for the specified board, ranking
+	 * every hand that can be dealt on it with the specified evaluator.
+	 *
+	 * @param board
+	 *            The complete board to compare hands on.
+	 * @param evaluator
+	 *            The evaluator to rank hands with.
+	 */
+	public RiverShowdown(Board board, Evaluator evaluator) {
+		if (board.cards().size() != Constants.BOARD_SIZE) {
+			throw new IllegalArgumentException("The board must have five cards");
+		}
+		this.board = board;
+		HandStrength strength = EquityCalculationBuilder.ranksAsDefault(evaluator) ? HandStrength.of(board)
+				: new HandStrength(board, evaluator);
+		this.ranks = strength.ranks();
+		this.order = strength.order();
+	}
+
+	/**
+	 * Obtains the board hands are compared on.
+	 *
+	 * @return The board.
+	 */
+	public Board board() {
+		return board;
+	}
+
+	/**
+	 * Obtains the exact equity of the specified range against another range,
+	 * with every pair of hands that can be dealt together weighted by the
+	 * product of their weights.
+	 *
+	 * @param range
+	 *            The range.
+	 * @param villain
+	 *            The opposing range.
+	 * @return The share of the pot won by the range on average, as a decimal,
+	 *         or {@link Double#NaN} if no two hands in the ranges can be dealt
+	 *         together.
+	 */
+	public double equity(Range range, Range villain) {
+		double[] results = results(EquityMatrix.weights(range), EquityMatrix.weights(villain));
+		return (results[0] + results[2] / 2) / (results[0] + results[1] + results[2]);
+	}
+
+	/**
+	 * Obtains the exact equity of every hand in the specified range against
+	 * another range, by {@link Hand#index()}.
+	 *
+	 * @param range
+	 *            The range.
+	 * @param villain
+	 *            The opposing range.
+	 * @return The share of the pot won by each hand on average, as a decimal,
+	 *         or {@link Double#NaN} for hands that are not in the range or
+	 *         cannot be dealt against any opposing hand.
+	 */
+	public double[] equities(Range range, Range villain) {
+		double[] ours = EquityMatrix.weights(range);
+		double[][] sweep = sweep(ours, EquityMatrix.weights(villain));
+		double[] equities = new double[Constants.HAND_COMBINATIONS];
+		Arrays.fill(equities, Double.NaN);
+		for (int hand : order) {
+			double faced = sweep[0][hand] + sweep[1][hand] + sweep[2][hand];
+			if (ours[hand] != 0 && faced > 0) {
+				equities[hand] = (sweep[0][hand] + sweep[2][hand] / 2) / faced;
+			}
+		}
+		return equities;
+	}
+
+	/**
+	 * Calculates the weighted number of pairs of hands that the hands in a
+	 * range win, lose and split against the hands in another range.
+	 *
+	 * @param ours
+	 *            The weight of each hand in the range, by index.
+	 * @param theirs
+	 *            The weight of each hand in the opposing range, by index.
+	 * @return The weighted number of pairs won, lost and split by the range,
+	 *         followed by the number of pairs of hands with a weight that can
+	 *         be dealt together.
+	 */
+	double[] results(double[] ours, double[] theirs) {
+		double[][] sweep = sweep(ours, theirs);
+		double[] results = new double[4];
+		for (int hand : order) {
+			for (int result = 0; result < 3; result++) {
+				results[result] += ours[hand] * sweep[result][hand];
+			}
+		}
+
+		/*
+		 * Count the pairs in the same way, with every weight as one.
+		 */
+		double[] present = new double[ours.length], opposing = new double[theirs.length];
+		for (int hand : order) {
+			present[hand] = ours[hand] != 0 ? 1 : 0;
+			opposing[hand] = theirs[hand] != 0 ? 1 : 0;
+		}
+		double[][] pairs = sweep(present, opposing);
+		for (int hand : order) {
+			results[3] += present[hand] * (pairs[0][hand] + pairs[1][hand] + pairs[2][hand]);
+		}
+		return results;
+	}
+
+	/**
+	 * Sweeps through every hand from the weakest to the strongest, finding
+	 * the weight of the opposing hands that each hand in the range beats,
+	 * loses to and ties with without sharing a card.
+	 *
+	 * @param ours
+	 *            The weight of each hand in the range, by index.
+	 * @param theirs
+	 *            The weight of each hand in the opposing range, by index.
+	 * @return The weight of the opposing hands beaten, lost to and tied with,
+	 *         for each hand by index.
+	 */
+	private double[][] sweep(double[] ours, double[] theirs) {
+		double[] wins = new double[Constants.HAND_COMBINATIONS], losses = new double[Constants.HAND_COMBINATIONS],
+				ties = new double[Constants.HAND_COMBINATIONS];
+
+		/*
+		 * The total weight of opposing hands, and of those containing each
+		 * card, over every hand and over the hands passed so far.
+		 */
+		double all = 0.0, passed = 0.0;
+		double[] cards = new double[Constants.DECK_SIZE], passedCards = new double[Constants.DECK_SIZE];
+		for (int hand : order) {
+			all += theirs[hand];
+			cards[HIGH[hand]] += theirs[hand];
+			cards[LOW[hand]] += theirs[hand];
+		}
+
+		for (int i = 0; i < order.length;) {
+			int j = i;
+			while (j < order.length && ranks[order[j]] == ranks[order[i]]) {
+				j++;
+			}
+
+			/*
+			 * Hands in a group of equal rank beat the hands passed before the
+			 * group and tie with the rest of the group.
+			 */
+			for (int k = i; k < j; k++) {
+				int hand = order[k];
+				if (ours[hand] != 0) {
+					wins[hand] = Math.max(0.0, passed - passedCards[HIGH[hand]] - passedCards[LOW[hand]]);
+				}
+			}
+			for (int k = i; k < j; k++) {
+				int hand = order[k];
+				passed += theirs[hand];
+				passedCards[HIGH[hand]] += theirs[hand];
+				passedCards[LOW[hand]] += theirs[hand];
+			}
+			for (int k = i; k < j; k++) {
+				int hand = order[k];
+				if (ours[hand] != 0) {
+					double beaten = passed - passedCards[HIGH[hand]] - passedCards[LOW[hand]] + theirs[hand];
+					double faced = all - cards[HIGH[hand]] - cards[LOW[hand]] + theirs[hand];
+					ties[hand] = Math.max(0.0, beaten - wins[hand]);
+					losses[hand] = Math.max(0.0, faced - beaten);
+				}
+			}
+			i = j;
+		}
+		return new double[][] { wins, losses, ties };
+	}
+
+}
@@ -30,6 +30,7 @@ import codes.derive.foldem.board.Street;
 import codes.derive.foldem.eval.DefaultEvaluator;
 import codes.derive.foldem.eval.Evaluator;
 import codes.derive.foldem.eval.HandValue;
+import codes.derive.foldem.eval.PreparedBoard;
 
 /**
  * A type that can analyze a board texture and provide an estimation of what
@@ -93,14 +94,16 @@ public class TextureAnalysisBuilder {
 		}
 
 		/*
-		 * Apply every hand to the results.
+		 * Apply every hand to the results, preparing our board first since
+		 * every hand is evaluated on it.
 		 */
+		PreparedBoard prepared = evaluator.prepare(board);
 		for (Hand hand : usable) {
 			
 			/*
 			 * Find the value of our hand.
 			 */
-			HandValue value = evaluator.value(hand, board);
+			HandValue value = prepared.value(hand);
 			
 			/*
 			 * Apply it to our results at its respective weight.
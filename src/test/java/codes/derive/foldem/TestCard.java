@@ -41,6 +41,22 @@ public class TestCard {
 		assertFalse(card("Ah").equals(card("Ad")));
 	}
 	
+	@Test
+	public void testIndex() {
+		long mask = 0L;
+		for (Card card : cards()) {
+			assertEquals(card, Card.fromIndex(card.index()));
+			mask |= 1L << card.index();
+		}
+		assertEquals(mask, Card.mask(cards()));
+		assertEquals(52, Long.bitCount(mask));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testBadIndex() {
+		Card.fromIndex(52);
+	}
+	
 	@Test(expected=IllegalArgumentException.class)
 	public void testBadValue() {
 		card("Zc");
@@ -0,0 +1,169 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem;
+
+import static codes.derive.foldem.Poker.*;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import codes.derive.foldem.HandIndexer.Canonical;
+import codes.derive.foldem.board.Boards;
+
+public class TestHandIndexer {
+
+	@Test
+	public void testStartingHands() {
+		Map<Canonical, Integer> found = new HashMap<>();
+		for (Hand hand : hands()) {
+			Canonical canonical = HandIndexer.canonical(hand, board());
+			found.merge(canonical, 1, Integer::sum);
+			assertTrue(canonical.index() < 169);
+		}
+		assertEquals(169, found.size());
+		for (Canonical canonical : found.keySet()) {
+			assertEquals(canonical.multiplicity(), (int) found.get(canonical));
+			assertEquals(169, canonical.size());
+		}
+	}
+
+	@Test
+	public void testFlops() {
+		Map<Canonical, Integer> found = new HashMap<>();
+		Card[] cards = deck().toArray();
+		for (int a = 0; a < cards.length; a++) {
+			for (int b = a + 1; b < cards.length; b++) {
+				for (int c = b + 1; c < cards.length; c++) {
+					Canonical canonical = HandIndexer.canonical(Boards.flop(cards[a], cards[b], cards[c]));
+					found.merge(canonical, 1, Integer::sum);
+				}
+			}
+		}
+		assertEquals(1755, found.size());
+		for (Canonical canonical : found.keySet()) {
+			assertEquals(canonical.multiplicity(), (int) found.get(canonical));
+			assertTrue(canonical.index() < 1755);
+		}
+	}
+
+	@Test
+	public void testPermutedSuits() {
+		assertEquals(HandIndexer.canonical(hand("AsKs"), board("2h7h9c")),
+				HandIndexer.canonical(hand("AhKh"), board("2s7s9d")));
+		assertEquals(HandIndexer.canonical(hand("AsKs"), board("2h7h9c")),
+				HandIndexer.canonical(hand("KsAs"), board("9c2h7h")));
+		assertNotEquals(HandIndexer.canonical(hand("AsKs"), board("2h7h9c")),
+				HandIndexer.canonical(hand("AsKs"), board("2s7h9c")));
+		assertNotEquals(HandIndexer.canonical(board("2h7h9c")),
+				HandIndexer.canonical(hand("AsKs"), board("2h7h9c")));
+	}
+
+	@Test
+	public void testRoundSizes() {
+		HandIndexer indexer = new HandIndexer(2, 3, 1, 1);
+		assertEquals(4, indexer.rounds());
+		assertEquals(169, indexer.size(0));
+		assertEquals(1286792, indexer.size(1));
+		assertEquals(55190538, indexer.size(2));
+		assertEquals(2428287420L, indexer.size(3));
+	}
+
+	@Test
+	public void testUnindex() {
+		HandIndexer indexer = new HandIndexer(2, 3);
+		for (long index = 0; index < indexer.size(1); index += 97) {
+			assertEquals(index, indexer.index(indexer.unindex(1, index)));
+		}
+		for (long index = 0; index < indexer.size(0); index++) {
+			assertEquals(index, indexer.index(indexer.unindex(0, index)));
+		}
+	}
+
+	@Test
+	public void testMultiplicity() {
+		HandIndexer indexer = new HandIndexer(2, 4);
+		Random random = new Random(0);
+		int[][] permutations = permutations();
+		for (int i = 0; i < 1000; i++) {
+			Deck deck = deck().shuffle(random);
+			int[] cards = new int[6];
+			for (int j = 0; j < cards.length; j++) {
+				cards[j] = deck.pop().index();
+			}
+
+			/*
+			 * Every permutation of suits has the same index, and the number of
+			 * different ones is the multiplicity.
+			 */
+			long index = indexer.index(cards);
+			Set<Set<Integer>> images = new HashSet<>();
+			for (int[] permutation : permutations) {
+				int[] permuted = new int[cards.length];
+				Set<Integer> hand = new HashSet<>(), board = new HashSet<>();
+				for (int j = 0; j < cards.length; j++) {
+					permuted[j] = permutation[cards[j] / 13] * 13 + cards[j] % 13;
+					(j < 2 ? hand : board).add(permuted[j] + (j < 2 ? 0 : 64));
+				}
+				assertEquals(index, indexer.index(permuted));
+				hand.addAll(board);
+				images.add(hand);
+			}
+			assertEquals(images.size(), indexer.multiplicity(cards));
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testDuplicateCard() {
+		new HandIndexer(2, 3).index(0, 1, 2, 3, 0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testIncompleteRound() {
+		new HandIndexer(2, 3).index(0, 1, 2);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testEmptyBoard() {
+		HandIndexer.canonical(board());
+	}
+
+	/**
+	 * Creates every permutation of the four suits.
+	 */
+	private static int[][] permutations() {
+		int[][] permutations = new int[24][];
+		int count = 0;
+		for (int a = 0; a < 4; a++) {
+			for (int b = 0; b < 4; b++) {
+				for (int c = 0; c < 4; c++) {
+					int d = 6 - a - b - c;
+					if (a != b && a != c && b != c && d != a && d != b && d != c) {
+						permutations[count++] = new int[] { a, b, c, d };
+					}
+				}
+			}
+		}
+		return permutations;
+	}
+
+}
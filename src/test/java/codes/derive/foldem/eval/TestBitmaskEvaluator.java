@@ -0,0 +1,62 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.eval;
+
+import static codes.derive.foldem.Poker.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestBitmaskEvaluator {
+
+	/* The evaluator under test. */
+	private final Evaluator eval = new BitmaskEvaluator();
+
+	@Test
+	public void testMatchesDefaultEvaluator() {
+		Evaluator reference = new DefaultEvaluator();
+		Random random = new Random(0);
+		for (int i = 0; i < 200000; i++) {
+			long cards = 0L;
+			while (Long.bitCount(cards) < 5 + i % 3) {
+				cards |= 1L << random.nextInt(52);
+			}
+			assertEquals(reference.rank(cards), eval.rank(cards));
+		}
+	}
+
+	@Test
+	public void testCategories() {
+		assertEquals(HandValue.STRAIGHT_FLUSH, eval.value(hand("Ad5d"), board("8s4d3d2d9s")));
+		assertEquals(HandValue.FOUR_OF_A_KIND, eval.value(hand("AcAs"), board("AhAd2c3c3d")));
+		assertEquals(HandValue.FULL_HOUSE, eval.value(hand("AcTs"), board("ThTdAhAd")));
+		assertEquals(HandValue.FLUSH, eval.value(hand("Ah2h"), board("5h9hKhKsKd")));
+		assertEquals(HandValue.STRAIGHT, eval.value(hand("Ac2s"), board("3h4d5c")));
+		assertEquals(HandValue.THREE_OF_A_KIND, eval.value(hand("7c7s"), board("7h2d9cKd")));
+		assertEquals(HandValue.TWO_PAIR, eval.value(hand("7c2s"), board("7h2d9c9dKs")));
+		assertEquals(HandValue.PAIR, eval.value(hand("7c2s"), board("7hJdQc")));
+		assertEquals(HandValue.HIGH_CARD, eval.value(hand("7c2s"), board("4hJdQc")));
+	}
+
+	@Test
+	public void testTooFewCards() {
+		assertEquals(7462, eval.rank(hand("AcTs"), board()));
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.eval;
+
+import static codes.derive.foldem.Poker.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.board.Board;
+
+public class TestCachingEvaluator {
+
+	@Test
+	public void testMatchesEvaluator() {
+		Evaluator reference = new DefaultEvaluator();
+		CachingEvaluator eval = new CachingEvaluator(reference, 1024);
+		Random random = new Random(0);
+		long[] masks = new long[4096];
+		for (int i = 0; i < masks.length; i++) {
+			while (Long.bitCount(masks[i]) < 5 + i % 3) {
+				masks[i] |= 1L << random.nextInt(52);
+			}
+		}
+		for (int i = 0; i < 50000; i++) {
+			long cards = masks[random.nextInt(masks.length)];
+			assertEquals(reference.rank(cards), eval.rank(cards));
+		}
+		assertEquals(50000, eval.hits() + eval.misses());
+		assertTrue(eval.hits() > 0);
+		assertTrue(eval.evictions() > 0);
+	}
+
+	@Test
+	public void testStatistics() {
+		CachingEvaluator eval = new CachingEvaluator(new DefaultEvaluator());
+		Hand hand = hand("AcAd");
+		Board board = board("AhAs2c");
+		assertEquals(HandValue.FOUR_OF_A_KIND, eval.value(hand, board));
+		int rank = eval.rank(hand, board);
+		assertEquals(rank, eval.rank(hand, board));
+		assertEquals(rank, eval.prepare(board).rank(hand));
+		assertEquals(2, eval.hits());
+		assertEquals(1, eval.misses());
+		assertEquals(0, eval.evictions());
+		assertEquals(2 / 3.0, eval.hitRate(), 1e-9);
+
+		eval.clear();
+		assertEquals(0, eval.hits());
+		assertEquals(rank, eval.rank(hand, board));
+		assertEquals(1, eval.misses());
+	}
+
+	@Test
+	public void testSharedCard() {
+		Evaluator reference = new DefaultEvaluator();
+		CachingEvaluator eval = new CachingEvaluator(reference);
+		assertEquals(reference.rank(hand("2dQh"), board("As2d7h")),
+				eval.rank(hand("2dQh"), board("As2d7h")));
+		assertEquals(0, eval.misses());
+	}
+
+	@Test
+	public void testCapacity() {
+		assertEquals(1024, new CachingEvaluator(new DefaultEvaluator(), 1000).capacity());
+		assertEquals(2, new CachingEvaluator(new DefaultEvaluator(), 1).capacity());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testBadCapacity() {
+		new CachingEvaluator(new DefaultEvaluator(), 0);
+	}
+
+}
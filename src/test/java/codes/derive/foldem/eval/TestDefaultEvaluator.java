@@ -19,14 +19,22 @@ package codes.derive.foldem.eval;
 import static codes.derive.foldem.Poker.*;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.Test;
 
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Deck;
 import codes.derive.foldem.Hand;
 import codes.derive.foldem.board.Board;
 import codes.derive.foldem.board.Boards;
+import codes.derive.foldem.board.Street;
 
 public class TestDefaultEvaluator {
 	
@@ -53,6 +61,135 @@ public class TestDefaultEvaluator {
 
 	}
 
+	@Test
+	public void testMaskRanking() {
+		Evaluator eval = new DefaultEvaluator();
+		
+		// a minimal evaluator that only provides the default mask ranking
+		Evaluator fallback = new Evaluator() {
+			
+			@Override
+			public int rank(Hand h, Board b) {
+				return eval.rank(h, b);
+			}
+			
+			@Override
+			public HandValue value(Hand hand, Board board) {
+				return eval.value(hand, board);
+			}
+			
+		};
+		
+		// rank random hands on every street using both paths
+		Random random = new Random(0);
+		for (int i = 0; i < 1000; i++) {
+			Deck deck = deck().shuffle(random);
+			Hand hand = hand(deck);
+			Board board = Boards.board(deck, Street.values()[1 + i % 3]);
+			long mask = Card.mask(hand.cards()) | Card.mask(board.cards());
+			assertEquals(eval.rank(hand, board), eval.rank(mask));
+			assertEquals(eval.rank(hand, board), fallback.rank(mask));
+		}
+	}
+
+	@Test
+	public void testPreparedBoard() {
+		Evaluator eval = new DefaultEvaluator();
+		Random random = new Random(1);
+		for (int i = 0; i < 100; i++) {
+			Deck deck = deck().shuffle(random);
+			Board board = Boards.board(deck, Street.values()[1 + i % 3]);
+			PreparedBoard prepared = eval.prepare(board);
+			assertEquals(board, prepared.board());
+			for (int j = 0; j < 10; j++) {
+				Hand hand = hand(deck);
+				assertEquals(eval.rank(hand, board), prepared.rank(hand));
+				assertEquals(eval.rank(hand, board), prepared.rank(Card.mask(hand.cards())));
+				assertEquals(eval.value(hand, board), prepared.value(hand));
+			}
+		}
+		
+		// hands sharing a card with the board are ranked as before
+		Board board = board("As2d7h");
+		assertEquals(5979, eval.prepare(board).rank(hand("2dQh")));
+	}
+
+	@Test
+	public void testRankAll() {
+		Evaluator eval = new DefaultEvaluator();
+		Random random = new Random(2);
+		for (int i = 0; i < 10; i++) {
+			Deck deck = deck().shuffle(random);
+			Board board = Boards.board(deck, Street.values()[1 + i % 3]);
+			
+			// rank every hand that is still in the deck, plus one using a
+			// card on the board
+			Hand[] hands = new Hand[(deck.remaining() - 1) / 2 + 1];
+			long[] masks = new long[hands.length];
+			for (int j = 0; j < hands.length - 1; j++) {
+				hands[j] = hand(deck);
+				masks[j] = Card.mask(hands[j].cards());
+			}
+			Card shared = board.cards().iterator().next();
+			hands[hands.length - 1] = hand(shared, card(deck));
+			masks[hands.length - 1] = Card.mask(hands[hands.length - 1].cards());
+			
+			int[] ranks = new int[hands.length];
+			eval.rankAll(hands, board, ranks);
+			for (int j = 0; j < hands.length; j++) {
+				assertEquals(eval.rank(hands[j], board), ranks[j]);
+			}
+			eval.rankAll(masks, board, ranks);
+			for (int j = 0; j < hands.length; j++) {
+				assertEquals(eval.rank(masks[j] | Card.mask(board.cards())), ranks[j]);
+			}
+		}
+	}
+	
+	@Test
+	public void testCompare() {
+		Evaluator eval = new DefaultEvaluator();
+		Random random = new Random(2);
+		for (int i = 0; i < 20000; i++) {
+			Deck deck = deck().shuffle(random);
+			Board board = Boards.board(deck, Street.values()[1 + i % 3]);
+			Hand a = hand(deck), b = hand(deck);
+			int expected = Integer.compare(eval.rank(a, board), eval.rank(b, board));
+			assertEquals(expected, Integer.signum(eval.compare(a, b, board)));
+			assertEquals(expected, Integer.signum(eval.compare(Card.mask(a.cards()),
+					Card.mask(b.cards()), Card.mask(board.cards()))));
+		}
+		assertTrue(eval.compare(hand("2h3h"), hand("AsAd"), board("9hKhTh4c")) < 0);
+		assertTrue(eval.compare(hand("2h3h"), hand("AsAd"), board("9hKhTh9c9d")) > 0);
+		assertEquals(0, eval.compare(hand("2c3d"), hand("2s3h"), board("9hKhTh4c5d")));
+	}
+
+	@Test
+	public void testRankTables() throws IOException {
+		Evaluators.warmUp();
+		ByteArrayOutputStream shipped = new ByteArrayOutputStream();
+		try (InputStream in = RankTables.class.getResourceAsStream("rank_tables")) {
+			byte[] buffer = new byte[4096];
+			for (int read; (read = in.read(buffer)) != -1;) {
+				shipped.write(buffer, 0, read);
+			}
+		}
+		ByteArrayOutputStream built = new ByteArrayOutputStream();
+		RankTables.build();
+		RankTables.write(new DataOutputStream(built));
+		assertArrayEquals(shipped.toByteArray(), built.toByteArray());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testTooManyCards() {
+		new DefaultEvaluator().rank(0xFFL);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testRankAllOutputTooSmall() {
+		new DefaultEvaluator().rankAll(new long[2], board("As2d7h"), new int[1]);
+	}
+
 	@Test
 	public void testValueRanking() {
 		Evaluator eval = new DefaultEvaluator();		
@@ -0,0 +1,184 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.eval;
+
+import static codes.derive.foldem.Poker.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import codes.derive.foldem.Deck;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.board.Board;
+import codes.derive.foldem.board.Boards;
+import codes.derive.foldem.board.Street;
+
+public class TestLookupTableEvaluator {
+
+	/* The table file used by the tests. */
+	private static Path path;
+
+	/* The evaluator under test. */
+	private static Evaluator eval;
+
+	@BeforeClass
+	public static void generate() throws IOException {
+		path = Files.createTempDirectory("foldem").resolve("lut.dat");
+		eval = new LookupTableEvaluator(path);
+	}
+
+	@AfterClass
+	public static void cleanUp() throws IOException {
+		Files.deleteIfExists(path);
+		Files.deleteIfExists(path.getParent());
+	}
+
+	@Test
+	public void testMatchesDefaultEvaluator() {
+		Evaluator reference = new DefaultEvaluator();
+		Random random = new Random(0);
+		for (int i = 0; i < 100000; i++) {
+			long cards = 0L;
+			while (Long.bitCount(cards) < 5 + i % 3) {
+				cards |= 1L << random.nextInt(52);
+			}
+			assertEquals(reference.rank(cards), eval.rank(cards));
+		}
+	}
+
+	@Test
+	public void testPreparedBoard() {
+		Evaluator reference = new DefaultEvaluator();
+		Random random = new Random(1);
+		for (int i = 0; i < 1000; i++) {
+			Deck deck = deck().shuffle(random);
+			Board board = Boards.board(deck, Street.values()[1 + i % 3]);
+			PreparedBoard prepared = eval.prepare(board);
+			for (int j = 0; j < 10; j++) {
+				Hand hand = hand(deck);
+				assertEquals(reference.rank(hand, board), prepared.rank(hand));
+				assertEquals(reference.value(hand, board), prepared.value(hand));
+			}
+		}
+	}
+
+	@Test
+	public void testPreflopPreparedBoard() {
+		Evaluator reference = new DefaultEvaluator();
+		PreparedBoard prepared = eval.prepare(board());
+		assertEquals(reference.rank(hand("AcTs"), board()), prepared.rank(hand("AcTs")));
+		assertEquals(reference.value(hand("AcTs"), board()), prepared.value(hand("AcTs")));
+	}
+
+	@Test
+	public void testReload() {
+		assertTrue(Files.isRegularFile(path));
+		Evaluator reloaded = new LookupTableEvaluator(path);
+		assertEquals(9, reloaded.rank(hand("Ad5d"), board("8s4d3d2d9s")));
+		assertEquals(HandValue.FULL_HOUSE, reloaded.value(hand("AcTs"), board("ThTdAh")));
+	}
+
+	@Test
+	public void testSharedTable() throws IOException {
+		if (Files.getFileStore(path).supportsFileAttributeView("posix")) {
+			assertTrue(Files.getPosixFilePermissions(path).contains(PosixFilePermission.OTHERS_READ));
+		}
+	}
+
+	@Test
+	public void testCorruptTable() throws IOException {
+		Path corrupt = path.resolveSibling("corrupt.dat");
+		Files.copy(path, corrupt, StandardCopyOption.REPLACE_EXISTING);
+		try {
+
+			/*
+			 * Point the first transition somewhere else, which a size check
+			 * alone wouldn't notice.
+			 */
+			try (FileChannel channel = FileChannel.open(corrupt, StandardOpenOption.WRITE)) {
+				channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }), 20);
+			}
+			Evaluator reloaded = new LookupTableEvaluator(corrupt);
+			assertEquals(9, reloaded.rank(hand("Ad5d"), board("8s4d3d2d9s")));
+			assertEquals(Files.size(path), Files.size(corrupt));
+			assertArrayEquals(head(path), head(corrupt));
+		} finally {
+			Files.deleteIfExists(corrupt);
+		}
+	}
+
+	@Test
+	public void testUnwritableTable() throws IOException {
+
+		/*
+		 * A table can't be written beneath a regular file, so a private table
+		 * is generated instead.
+		 */
+		Path file = path.resolveSibling("file");
+		Files.createFile(file);
+		try {
+			Evaluator reloaded = new LookupTableEvaluator(file.resolve("lut.dat"));
+			assertEquals(9, reloaded.rank(hand("Ad5d"), board("8s4d3d2d9s")));
+			assertEquals(HandValue.FULL_HOUSE, reloaded.value(hand("AcTs"), board("ThTdAh")));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Reads the header and first state of a table file.
+	 */
+	private static byte[] head(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer head = ByteBuffer.allocate(64);
+			while (head.hasRemaining() && channel.read(head) != -1);
+			return head.array();
+		}
+	}
+
+	@Test
+	public void testTooFewCards() {
+		Evaluator reference = new DefaultEvaluator();
+		assertEquals(reference.rank(hand("AcTs"), board()), eval.rank(hand("AcTs"), board()));
+		assertEquals(reference.value(hand("AcTs"), board()), eval.value(hand("AcTs"), board()));
+		assertEquals(reference.rank(0x7L), eval.rank(0x7L));
+	}
+
+	@Test
+	public void testSharedCard() {
+		Evaluator reference = new DefaultEvaluator();
+		for (String shorthand : new String[] { "AcTd4d", "AcTd4d9s", "AcTd4d9sTs" }) {
+			Board board = board(shorthand);
+			assertEquals(reference.rank(hand("AcTs"), board), eval.rank(hand("AcTs"), board));
+			assertEquals(reference.value(hand("AcTs"), board), eval.value(hand("AcTs"), board));
+			assertEquals(reference.prepare(board).rank(hand("AcTs")), eval.prepare(board).rank(hand("AcTs")));
+		}
+	}
+
+}
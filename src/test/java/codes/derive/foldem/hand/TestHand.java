@@ -23,6 +23,7 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import codes.derive.foldem.Constants;
 import codes.derive.foldem.Deck;
 import codes.derive.foldem.Hand;
 
@@ -46,5 +47,21 @@ public class TestHand {
 		assertTrue(hand.cards().contains(comparison.pop()));
 		assertTrue(hand.cards().contains(comparison.pop()));
 	}
+
+	@Test
+	public void testIndex() {
+		boolean[] seen = new boolean[Constants.HAND_COMBINATIONS];
+		for (Hand hand : hands()) {
+			assertFalse(seen[hand.index()]);
+			seen[hand.index()] = true;
+			assertEquals(hand, Hand.fromIndex(hand.index()));
+		}
+		assertEquals(hand("AsKd").index(), hand("KdAs").index());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testBadIndex() {
+		Hand.fromIndex(1326);
+	}
 	
 }
@@ -19,15 +19,31 @@ package codes.derive.foldem.tool;
 import static codes.derive.foldem.Poker.*;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
 
 import org.junit.Test;
 
+import codes.derive.foldem.Card;
 import codes.derive.foldem.Hand;
 import codes.derive.foldem.Range;
+import codes.derive.foldem.board.Board;
 import codes.derive.foldem.board.Boards;
+import codes.derive.foldem.board.Street;
+import codes.derive.foldem.eval.CachingEvaluator;
 import codes.derive.foldem.eval.DefaultEvaluator;
+import codes.derive.foldem.eval.Evaluator;
 import codes.derive.foldem.tool.EquityCalculationBuilder.Equity;
 
 public class EquityCalculationTest {
@@ -146,4 +162,603 @@ public class EquityCalculationTest {
 		
 	}
 
+	@Test
+	public void testExhaustiveEnumeration() {
+		Hand a = hand("9s9h");
+		Hand b = hand("TdTs");
+		Hand c = hand("AcKc");
+		Board board = board("9c2c2h");
+
+		Map<Hand, Equity> equities = calculationBuilder().useBoard(board)
+				.useExhaustiveEnumeration().calculate(a, b, c);
+
+		/*
+		 * Count the results on every turn and river ourselves.
+		 */
+		Evaluator eval = new DefaultEvaluator();
+		double[] wins = new double[3];
+		int runouts = 0;
+		List<Card> deck = Arrays.asList(deck().toArray());
+		for (Card turn : deck) {
+			for (Card river : deck) {
+				if (turn.index() >= river.index() || dealt(turn, a, b, c, board)
+						|| dealt(river, a, b, c, board)) {
+					continue;
+				}
+				Board complete = Boards.board(card("9c"), card("2c"), card("2h"), turn, river);
+				int ra = eval.rank(a, complete), rb = eval.rank(b, complete), rc = eval.rank(c, complete);
+				int best = Math.min(ra, Math.min(rb, rc));
+				wins[0] += ra == best && rb != best && rc != best ? 1 : 0;
+				wins[1] += rb == best && ra != best && rc != best ? 1 : 0;
+				wins[2] += rc == best && ra != best && rb != best ? 1 : 0;
+				runouts++;
+			}
+		}
+		assertEquals(903, runouts);
+		assertEquals(wins[0] / runouts, equities.get(a).win(), 1e-12);
+		assertEquals(wins[1] / runouts, equities.get(b).win(), 1e-12);
+		assertEquals(wins[2] / runouts, equities.get(c).win(), 1e-12);
+		for (Equity e : equities.values()) {
+			assertEquals(1.0, e.win() + e.lose() + e.split(), 1e-12);
+		}
+	}
+
+	@Test
+	public void testExhaustiveEnumerationRiver() {
+		Map<Hand, Equity> equities = calculationBuilder().useBoard(board("9c2c2hAsKd"))
+				.useExhaustiveEnumeration().calculate(hand("AcQd"), hand("AhQs"));
+		assertEquals(1.0, equities.get(hand("AcQd")).split(), 0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testExhaustiveEnumerationConflict() {
+		calculationBuilder().useDeadCards(card("Ac")).useExhaustiveEnumeration()
+				.calculate(hand("AcQd"), hand("AhQs"));
+	}
+
+	@Test
+	public void testDeterministicSimulation() throws Exception {
+		Hand[] hands = { hand("AcAs"), hand("KdKh"), hand("7s8s") };
+		Range[] ranges = { range(hand("AcAh"), hand("QsQh")), range(hand("KsKh"), hand("JsJh")) };
+		EquityCalculationBuilder bldr = calculationBuilder().useSampleSize(5000).useSeed(42);
+
+		ForkJoinPool single = new ForkJoinPool(1), many = new ForkJoinPool(4);
+		try {
+			Map<Hand, Equity> a = single.submit(() -> bldr.calculate(hands)).get();
+			Map<Hand, Equity> b = many.submit(() -> bldr.calculate(hands)).get();
+			for (Hand hand : hands) {
+				assertEquals(a.get(hand).win(), b.get(hand).win(), 0);
+				assertEquals(a.get(hand).split(), b.get(hand).split(), 0);
+				assertEquals(1.0, b.get(hand).win() + b.get(hand).lose() + b.get(hand).split(), 1e-12);
+			}
+
+			Map<Range, Equity> c = single.submit(() -> bldr.calculate(ranges)).get();
+			Map<Range, Equity> d = many.submit(() -> bldr.calculate(ranges)).get();
+			for (Range range : ranges) {
+				assertEquals(c.get(range).win(), d.get(range).win(), 0);
+				assertEquals(c.get(range).lose(), d.get(range).lose(), 0);
+			}
+		} finally {
+			single.shutdown();
+			many.shutdown();
+		}
+	}
+
+	@Test
+	public void testTargetStandardError() {
+		Hand a = hand("AcAs");
+		Hand b = hand("KdKh");
+
+		Map<Hand, Equity> equities = calculationBuilder().useTargetStandardError(0.005)
+				.useDeadCards(card("2c")).calculate(a, b);
+		for (Equity e : equities.values()) {
+			assertTrue(e.standardError() <= 0.005);
+			assertTrue(e.samples() < EquityCalculationBuilder.DEFAULT_MAXIMUM_SAMPLE_SIZE);
+			assertEquals(0, e.samples() % 1024);
+		}
+		assertEquals(0.82, equities.get(a).equity(), 0.05);
+		assertEquals(1.0, equities.get(a).equity() + equities.get(b).equity(), 1e-9);
+
+		equities = calculationBuilder().useTargetStandardError(1e-6, 3000)
+				.useDeadCards(card("2c")).calculate(a, b);
+		assertEquals(3000, equities.get(a).samples());
+		assertTrue(equities.get(a).standardError() > 1e-6);
+	}
+
+	@Test
+	public void testExhaustiveStandardError() {
+		Map<Hand, Equity> equities = calculationBuilder().useBoard(board("9c2c2h4d"))
+				.useExhaustiveEnumeration().calculate(hand("AcQd"), hand("KhKs"));
+		for (Equity e : equities.values()) {
+			assertEquals(44, e.samples());
+			assertEquals(0.0, e.standardError(), 0);
+		}
+	}
+
+	@Test
+	public void testExhaustiveRanges() {
+		Board board = board("Kd7c2h");
+		Range a = range(hand("AcAh"), hand("AdAs")).define(0.5, hand("QsQh"), hand("7d7h"));
+		Range b = range(hand("KsKh"), hand("JsJh"), hand("7s7h"), hand("AcKc"));
+
+		Map<Range, Equity> equities = calculationBuilder().useBoard(board)
+				.useExhaustiveEnumeration().calculate(a, b);
+
+		/*
+		 * Weight the exact equity of every usable pair of hands ourselves.
+		 */
+		double win = 0, lose = 0, split = 0, total = 0;
+		for (Hand x : a.all()) {
+			for (Hand y : b.all()) {
+				if (!Collections.disjoint(x.cards(), y.cards())) {
+					continue;
+				}
+				double weight = a.weight(x) * b.weight(y);
+				Equity e = calculationBuilder().useBoard(board).useExhaustiveEnumeration()
+						.calculate(x, y).get(x);
+				win += weight * e.win();
+				lose += weight * e.lose();
+				split += weight * e.split();
+				total += weight;
+			}
+		}
+		assertEquals(win / total, equities.get(a).win(), 1e-9);
+		assertEquals(lose / total, equities.get(a).lose(), 1e-9);
+		assertEquals(split / total, equities.get(a).split(), 1e-9);
+		assertEquals(lose / total, equities.get(b).win(), 1e-9);
+		assertEquals(0.0, equities.get(a).standardError(), 0);
+		assertEquals(Math.round(990 * total), equities.get(a).samples());
+	}
+
+	@Test
+	public void testExhaustiveDuplicateRange() {
+
+		/*
+		 * A hand defined twice is still only one hand, whichever way the
+		 * exact equity is found.
+		 */
+		Range duplicate = range(hand("AcAh")).define(0.5, hand("AcAh"), hand("2c2d"));
+		Range single = new Range().define(duplicate.weight(hand("AcAh")), hand("AcAh")).define(0.5, hand("2c2d"));
+		Range villain = range(hand("KsKh"));
+		for (String board : new String[] { "3s4s9dTc", "3s4s9dTc5h" }) {
+			Map<Range, Equity> expected = calculationBuilder().useBoard(board(board)).useExhaustiveEnumeration()
+					.calculate(single, villain);
+			Map<Range, Equity> equities = calculationBuilder().useBoard(board(board)).useExhaustiveEnumeration()
+					.calculate(duplicate, villain);
+			assertEquals(expected.get(single).equity(), equities.get(duplicate).equity(), 1e-12);
+			assertEquals(expected.get(single).samples(), equities.get(duplicate).samples());
+		}
+	}
+
+	@Test
+	public void testJointRangeSampling() {
+		Range a = range(hand("AcAh")).define(0.5, hand("AdAs"));
+		Range b = range(hand("AcKc"), hand("KsKh"));
+
+		/*
+		 * Every pair of hands without a card in common should be drawn in
+		 * proportion to the product of their weights.
+		 */
+		JointRangeSampler sampler = new JointRangeSampler(new Range[] { a, b }, 0L);
+		SplittableRandom random = new SplittableRandom(0);
+		long[] hands = new long[2];
+		Map<Long, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 100000; i++) {
+			sampler.sample(random, hands);
+			assertEquals(0, hands[0] & hands[1]);
+			counts.merge(hands[0] | hands[1], 1, Integer::sum);
+		}
+		assertEquals(3, counts.size());
+		assertEquals(0.5, counts.get(mask("AcAhKsKh")) / 100000.0, 0.01);
+		assertEquals(0.25, counts.get(mask("AdAsKsKh")) / 100000.0, 0.01);
+		assertEquals(0.25, counts.get(mask("AdAsAcKc")) / 100000.0, 0.01);
+		assertEquals(200000, sampler.draws() - sampler.rejections());
+		assertTrue(sampler.rejectionRate() > 0 && sampler.rejectionRate() < 1);
+
+		/*
+		 * A hand defined twice is drawn with its weight only once.
+		 */
+		Range duplicate = range(hand("AcAh")).define(0.5, hand("AcAh"), hand("AdAs"));
+		double weight = duplicate.weight(hand("AcAh"));
+		sampler = new JointRangeSampler(new Range[] { duplicate, range(hand("KsKh")) }, 0L);
+		int drawn = 0;
+		for (int i = 0; i < 100000; i++) {
+			sampler.sample(random, hands);
+			drawn += hands[0] == mask("AcAh") ? 1 : 0;
+		}
+		assertEquals(weight / (weight + 0.5), drawn / 100000.0, 0.01);
+
+		/*
+		 * Hands that conflict with the dealt cards are never drawn.
+		 */
+		sampler = new JointRangeSampler(new Range[] { a, b }, mask("Kh"));
+		for (int i = 0; i < 1000; i++) {
+			sampler.sample(random, hands);
+			assertEquals(mask("AdAs"), hands[0]);
+			assertEquals(mask("AcKc"), hands[1]);
+		}
+
+		Map<Range, Equity> equities = calculationBuilder().useSampleSize(SAMPLE_SIZE).calculate(a, b);
+		assertTrue(equities.get(a).rejectionRate() > 0);
+		assertEquals(equities.get(a).rejectionRate(), equities.get(b).rejectionRate(), 0);
+		assertEquals(0.0, calculationBuilder().useSampleSize(SAMPLE_SIZE)
+				.calculate(hand("AcAh"), hand("KsKh")).get(hand("AcAh")).rejectionRate(), 0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testUndealtRange() {
+		new JointRangeSampler(new Range[] { range(hand("AcAh")) }, mask("Ah"));
+	}
+
+	@Test(timeout=10000, expected=IllegalArgumentException.class)
+	public void testIncompatibleRanges() {
+
+		/*
+		 * Every pair of ranges can be dealt together, but all three can't.
+		 */
+		Range a = range(hand("AsKs"), hand("QsJs"));
+		Range b = range(hand("AsQs"), hand("KsJs"));
+		Range c = range(hand("AsJs"), hand("KsQs"));
+		calculationBuilder().useSampleSize(SAMPLE_SIZE).calculate(a, b, c);
+	}
+
+	@Test
+	public void testPreflopEquityTable() {
+		PreflopEquityTable table = PreflopEquityTable.shipped();
+		assertNotNull(table);
+
+		/*
+		 * Enumerate every board ourselves with an evaluator the table isn't
+		 * used for, in both orders since only one order is stored.
+		 */
+		Hand[][] matchups = { { hand("AcAs"), hand("KdKh") }, { hand("7s8s"), hand("AhKs") } };
+		for (Hand[] hands : matchups) {
+			Map<Hand, Equity> exact = calculationBuilder().useExhaustiveEnumeration()
+					.useEvaluator(new DefaultEvaluator() {}).calculate(hands);
+			Map<Hand, Equity> equities = calculationBuilder().calculate(hands);
+			for (int i = 0; i < 2; i++) {
+				Hand hand = hands[i], other = hands[1 - i];
+				assertEquals(PreflopEquityTable.BOARDS, exact.get(hand).samples());
+				assertEquals(exact.get(hand).win() * PreflopEquityTable.BOARDS, table.wins(hand, other), 1e-6);
+				assertEquals(exact.get(hand).split() * PreflopEquityTable.BOARDS, table.splits(hand, other), 1e-6);
+				assertEquals(exact.get(hand).equity(), table.equity(hand, other), 1e-12);
+				assertEquals(exact.get(hand).win(), equities.get(hand).win(), 1e-12);
+				assertEquals(exact.get(hand).lose(), equities.get(hand).lose(), 1e-12);
+				assertEquals(exact.get(hand).equity(), equities.get(hand).equity(), 1e-12);
+				assertEquals(0.0, equities.get(hand).standardError(), 0);
+			}
+		}
+
+		/*
+		 * Hands that only differ by a permutation of suits share an entry.
+		 */
+		assertEquals(table.wins(hand("AhKh"), hand("2c2d")), table.wins(hand("AsKs"), hand("2h2c")));
+		assertEquals(table.equity(hand("QdJc"), hand("QcTd")), table.equity(hand("QhJs"), hand("QsTh")), 0);
+		assertEquals(0.5, table.equity(hand("AsKs"), hand("AhKh")), 0);
+	}
+
+	@Test
+	public void testPreflopEquityTableBypass() {
+		Hand[] hands = { hand("AcAs"), hand("KdKh") };
+		assertEquals(PreflopEquityTable.BOARDS, calculationBuilder().useEvaluator(new CachingEvaluator(new DefaultEvaluator()))
+				.calculate(hands).get(hands[0]).samples());
+
+		/*
+		 * Evaluators that may rank hands differently and listeners waiting
+		 * for estimates are given a simulation instead.
+		 */
+		assertEquals(SAMPLE_SIZE, calculationBuilder().useSampleSize(SAMPLE_SIZE).useEvaluator(new DefaultEvaluator() {})
+				.calculate(hands).get(hands[0]).samples());
+		List<Map<?, Equity>> estimates = new ArrayList<>();
+		Map<Hand, Equity> equities = calculationBuilder().useSampleSize(2048).useListener(e -> estimates.add(e), 1024)
+				.calculate(hands);
+		assertEquals(2, estimates.size());
+		assertEquals(2048, equities.get(hands[0]).samples());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testPreflopEquityTableConflict() {
+		calculationBuilder().calculate(hand("AcAs"), hand("AcKh"));
+	}
+
+	@Test
+	public void testListener() {
+		Hand[] hands = { hand("AcAs"), hand("KdKh"), hand("7s8s") };
+		List<Map<?, Equity>> estimates = new ArrayList<>();
+		Map<Hand, Equity> equities = calculationBuilder().useSampleSize(10240).useSeed(7)
+				.useListener(e -> estimates.add(e), 2048).calculate(hands);
+
+		/*
+		 * Estimates arrive every interval, the last being our result, which is
+		 * the same as without a listener.
+		 */
+		assertEquals(5, estimates.size());
+		for (int i = 0; i < estimates.size(); i++) {
+			assertEquals(2048 * (i + 1), estimates.get(i).get(hands[0]).samples());
+			assertTrue(estimates.get(i).get(hands[0]).standardError() > 0);
+		}
+		Map<Hand, Equity> plain = calculationBuilder().useSampleSize(10240).useSeed(7).calculate(hands);
+		for (Hand hand : hands) {
+			assertEquals(plain.get(hand).equity(), equities.get(hand).equity(), 0);
+			assertEquals(equities.get(hand).equity(), estimates.get(4).get(hand).equity(), 0);
+		}
+	}
+
+	@Test
+	public void testListenerStop() {
+		Range a = range(hand("AcAh"), hand("QsQh"));
+		Range b = range(hand("KsKh"), hand("JsJh"));
+		int[] updates = new int[1];
+		Map<Range, Equity> equities = calculationBuilder().useSampleSize(100000)
+				.useListener(e -> ++updates[0] < 2, 1, TimeUnit.NANOSECONDS).calculate(a, b);
+		assertEquals(2, updates[0]);
+		assertTrue(equities.get(a).samples() < 100000);
+		assertEquals(1.0, equities.get(a).win() + equities.get(a).lose() + equities.get(a).split(), 1e-12);
+	}
+
+	@Test
+	public void testAsync() throws Exception {
+		Hand a = hand("AcAh"), b = hand("KsKh");
+		EquityCalculationBuilder builder = calculationBuilder().useBoard(board("2c7d9h"));
+		Map<Hand, Equity> expected = builder.calculate(a, b);
+		Map<Hand, Equity> actual = builder.calculateAsync(a, b).get();
+		assertEquals(expected.get(a).equity(), actual.get(a).equity(), 0.0);
+		assertFalse(actual.get(a).partial());
+	}
+
+	@Test
+	public void testExecutors() throws Exception {
+		Range a = range(hand("AcAh"), hand("QsQh"));
+		Range b = range(hand("KsKh"), hand("JsJh"));
+		Hand c = hand("AcAh"), d = hand("KsKh");
+		Map<Range, Equity> expected = calculationBuilder().calculate(a, b);
+		Map<Hand, Equity> exact = calculationBuilder().useBoard(board("2c7d9h")).useExhaustiveEnumeration()
+				.calculate(c, d);
+		ExecutorService single = Executors.newFixedThreadPool(1);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			for (ExecutorService executor : Arrays.asList(single, pool)) {
+				EquityCalculationBuilder builder = calculationBuilder().useExecutor(executor);
+				assertEquals(expected.get(a).equity(), builder.calculate(a, b).get(a).equity(), 0.0);
+				assertEquals(expected.get(a).equity(), builder.calculateAsync(a, b).get().get(a).equity(), 0.0);
+				Map<Hand, Equity> equities = builder.useBoard(board("2c7d9h")).useExhaustiveEnumeration()
+						.calculateAsync(c, d).get();
+				assertEquals(exact.get(c).equity(), equities.get(c).equity(), 0.0);
+			}
+		} finally {
+			single.shutdown();
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testDeadline() throws Exception {
+		Range a = range(hand("AcAh"), hand("QsQh"));
+		Range b = range(hand("KsKh"), hand("JsJh"));
+		Map<Range, Equity> equities = calculationBuilder().useSampleSize(50000000)
+				.useDeadline(50, TimeUnit.MILLISECONDS).calculateAsync(a, b).get();
+		assertTrue(equities.get(a).partial());
+		assertTrue(equities.get(a).samples() >= 1024);
+		assertTrue(equities.get(a).samples() < 50000000);
+		assertEquals(1.0, equities.get(a).win() + equities.get(a).lose() + equities.get(a).split(), 1e-12);
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		Hand a = hand("AcAh"), b = hand("KsKh");
+		ExecutorService single = Executors.newFixedThreadPool(1);
+		try {
+			EquityCalculationBuilder builder = calculationBuilder().useExecutor(single).useSampleSize(50000000);
+			assertTrue(builder.useDeadCards(card("2c")).calculateAsync(a, b).cancel(true));
+			single.submit(() -> null).get(30, TimeUnit.SECONDS);
+		} finally {
+			single.shutdown();
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testBadDeadline() {
+		calculationBuilder().useDeadline(0, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testEquityVector() {
+		Hand hero = hand("AcKc");
+		Range villain = range(hand("QsQh"), hand("QcQd"), hand("Js9s"), hand("AhKd"), hand("2h7d"));
+		Board flop = board("Qd9c2h");
+		EquityVector vector = calculationBuilder().useBoard(flop).calculateVector(hero, villain);
+		assertTrue(vector.exact());
+		Set<Integer> indices = new HashSet<>();
+		for (Hand villainHand : vector.hands()) {
+			indices.add(villainHand.index());
+		}
+		assertEquals(new HashSet<>(Arrays.asList(hand("QsQh").index(), hand("Js9s").index(), hand("AhKd").index())),
+				indices);
+		for (Hand villainHand : vector.hands()) {
+			Equity expected = calculationBuilder().useBoard(flop).useExhaustiveEnumeration()
+					.calculate(hero, villainHand).get(hero);
+			assertEquals(expected.equity(), vector.equity(villainHand), 1e-12);
+			assertEquals(expected.samples(), vector.samples(villainHand));
+		}
+		assertTrue(Double.isNaN(vector.equity(hand("QcQd"))));
+		assertTrue(Double.isNaN(vector.equities()[hand("2h7d").index()]));
+	}
+
+	@Test
+	public void testSimulatedEquityVector() {
+		Hand hero = hand("AcAh");
+		EquityVector vector = calculationBuilder().useSampleSize(50000).calculateVector(hero,
+				range(hand("KsKd"), hand("7s6s")));
+		assertFalse(vector.exact());
+		for (Hand villain : vector.hands()) {
+			double expected = PreflopEquityTable.shipped().equity(hero, villain);
+			assertEquals(expected, vector.equity(villain), 4 * vector.standardError(villain));
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testEquityVectorConflict() {
+		calculationBuilder().useBoard(board("AcKd2h")).calculateVector(hand("AcAh"), range(hand("KsKh")));
+	}
+
+	@Test
+	public void testEquityDistribution() {
+		Range range = range(hand("AsAh"), hand("AcAd"), hand("KsKh"), hand("Js9s"), hand("7c6c"), hand("3h2h"));
+		Range opponent = range(hand("QsQh"), hand("AhKd"), hand("Tc9c"), hand("8d8h"));
+		Board flop = board("Qd9c2h");
+		EquityDistribution distribution = calculationBuilder().useBoard(flop).calculateDistribution(range, opponent);
+		assertTrue(distribution.exact());
+		assertEquals(5, distribution.hands().size());
+
+		/*
+		 * Every opposing hand is weighted equally, so the equity of a hand is
+		 * the average of its equity against each of them.
+		 */
+		double[] equities = distribution.equities();
+		for (int i = 0; i < equities.length; i++) {
+			Hand hand = distribution.hands().get(i);
+			EquityVector vector = calculationBuilder().useBoard(flop).calculateVector(hand, opponent);
+			double total = 0.0;
+			for (Hand villain : vector.hands()) {
+				total += vector.equity(villain);
+			}
+			assertEquals(total / vector.hands().size(), equities[i], 1e-12);
+			assertEquals(equities[i], distribution.equity(hand), 0.0);
+			assertTrue(i == 0 || equities[i - 1] <= equities[i]);
+		}
+
+		double[] histogram = distribution.histogram(10);
+		assertEquals(1.0, Arrays.stream(histogram).sum(), 1e-12);
+		assertEquals(1.0, distribution.fraction(0.0), 1e-12);
+		assertEquals(0.2, distribution.fraction(equities[4]), 1e-12);
+		assertTrue(Double.isNaN(distribution.equity(hand("3h2h"))));
+	}
+
+	@Test
+	public void testSimulatedEquityDistribution() {
+		Range range = range(hand("AsAh"), hand("KsKh"));
+		Range opponent = range(hand("QsQh"), hand("7c6c"));
+		EquityDistribution distribution = calculationBuilder().useSampleSize(20000)
+				.calculateDistribution(range, opponent);
+		assertFalse(distribution.exact());
+		PreflopEquityTable table = PreflopEquityTable.shipped();
+		double expected = (table.equity(hand("AsAh"), hand("QsQh")) + table.equity(hand("AsAh"), hand("7c6c"))) / 2;
+		assertEquals(expected, distribution.equity(hand("AsAh")), 0.02);
+	}
+
+	@Test
+	public void testStreetBreakdown() {
+		Hand a = hand("AcAh"), b = hand("KsKh");
+		Board flop = board("2c7d9h");
+		Map<Hand, Equity> equities = calculationBuilder().useBoard(flop).useStreetBreakdown().calculate(a, b);
+		Map<Hand, Equity> expected = calculationBuilder().useBoard(flop).useExhaustiveEnumeration().calculate(a, b);
+		assertEquals(expected.get(a).win(), equities.get(a).win(Street.RIVER), 0.0);
+		assertEquals(1.0, equities.get(a).win(Street.FLOP), 0.0);
+		assertEquals(1.0, equities.get(b).lose(Street.FLOP), 0.0);
+		assertTrue(Double.isNaN(equities.get(a).win(Street.PREFLOP)));
+
+		/*
+		 * Count the turns kings come from behind on by hand.
+		 */
+		Evaluator evaluator = new DefaultEvaluator();
+		long used = mask("AcAhKsKh2c7d9h");
+		int turns = 0, behind = 0;
+		for (int card = 0; card < 52; card++) {
+			if ((used & (1L << card)) == 0) {
+				turns++;
+				long board = mask("2c7d9h") | (1L << card);
+				if (evaluator.rank(mask("KsKh") | board) < evaluator.rank(mask("AcAh") | board)) {
+					behind++;
+				}
+			}
+		}
+		assertEquals((double) behind / turns, equities.get(a).lose(Street.TURN), 1e-12);
+		assertEquals((double) behind / turns, equities.get(b).win(Street.TURN), 1e-12);
+	}
+
+	@Test
+	public void testPreflopStreetBreakdown() {
+		Hand a = hand("AcKc"), b = hand("QsQh");
+		Map<Hand, Equity> equities = calculationBuilder().useStreetBreakdown().calculate(a, b);
+		PreflopEquityTable table = PreflopEquityTable.shipped();
+		assertEquals(table.wins(a, b) / 1712304.0, equities.get(a).win(Street.RIVER), 1e-12);
+
+		/*
+		 * Every flop is counted once.
+		 */
+		Evaluator evaluator = new DefaultEvaluator();
+		long used = mask("AcKcQsQh");
+		int flops = 0, ahead = 0, tied = 0;
+		for (int x = 0; x < 52; x++) {
+			for (int y = x + 1; y < 52; y++) {
+				for (int z = y + 1; z < 52; z++) {
+					long board = (1L << x) | (1L << y) | (1L << z);
+					if ((board & used) == 0) {
+						flops++;
+						int result = Integer.compare(evaluator.rank(mask("AcKc") | board),
+								evaluator.rank(mask("QsQh") | board));
+						ahead += result < 0 ? 1 : 0;
+						tied += result == 0 ? 1 : 0;
+					}
+				}
+			}
+		}
+		assertEquals((double) ahead / flops, equities.get(a).win(Street.FLOP), 1e-12);
+		assertEquals((double) tied / flops, equities.get(a).split(Street.FLOP), 1e-12);
+	}
+
+	@Test
+	public void testEquityMatrix() {
+		Board turn = board("Qd9c2h7s");
+		EquityMatrix matrix = calculationBuilder().useBoard(turn).calculateMatrix();
+		Hand a = hand("AcKc"), b = hand("Js8s");
+		Map<Hand, Equity> expected = calculationBuilder().useBoard(turn).useExhaustiveEnumeration().calculate(a, b);
+		assertEquals(expected.get(a).equity(), matrix.equity(a, b), 1.0 / 131070);
+		assertEquals(expected.get(b).equity(), matrix.equity(b, a), 1.0 / 131070);
+		assertTrue(Double.isNaN(matrix.equity(a, hand("AcAh"))));
+		assertTrue(Double.isNaN(matrix.equity(a, hand("QdQh"))));
+
+		Range range = new Range().define(hand("AcKc"), hand("AsKd"), hand("QsQh")).define(0.5, hand("Tc8c"));
+		Range villain = new Range().define(hand("Js8s"), hand("KsKh"), hand("9s9h"), hand("AhKh"));
+		Map<Range, Equity> equities = calculationBuilder().useBoard(turn).useExhaustiveEnumeration()
+				.calculate(range, villain);
+		assertEquals(equities.get(range).equity(), matrix.equity(range, villain), 1.0 / 131070);
+		assertEquals(equities.get(villain).equity(), matrix.equity(villain, range), 1.0 / 131070);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testEquityMatrixPreflop() {
+		calculationBuilder().calculateMatrix();
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testBadListenerInterval() {
+		calculationBuilder().useListener(e -> true, 0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testBadSampleSize() {
+		calculationBuilder().useSampleSize(0);
+	}
+
+	/**
+	 * Creates a mask containing the cards in the specified shorthand.
+	 */
+	private static long mask(String cards) {
+		long mask = 0L;
+		for (int i = 0; i < cards.length(); i += 2) {
+			mask |= 1L << card(cards.substring(i, i + 2)).index();
+		}
+		return mask;
+	}
+
+	/**
+	 * Checks whether the specified card is in any of the specified hands or on
+	 * the specified board.
+	 */
+	private static boolean dealt(Card card, Hand a, Hand b, Hand c, Board board) {
+		return a.cards().contains(card) || b.cards().contains(card)
+				|| c.cards().contains(card) || board.cards().contains(card);
+	}
+
 }
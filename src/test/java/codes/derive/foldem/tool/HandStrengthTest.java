@@ -0,0 +1,96 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.tool;
+
+import static codes.derive.foldem.Poker.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.board.Board;
+import codes.derive.foldem.eval.DefaultEvaluator;
+import codes.derive.foldem.eval.Evaluator;
+
+public class HandStrengthTest {
+
+	@Test
+	public void testAgainstEveryHand() {
+		Evaluator evaluator = new DefaultEvaluator();
+		for (String shorthand : new String[] { "Qd9c2h", "Qd9c2h7s", "Qd9c2h7s7d" }) {
+			Board board = board(shorthand);
+			HandStrength strength = HandStrength.of(board);
+			long cards = Card.mask(board.cards());
+			for (Hand hero : new Hand[] { hand("AcKc"), hand("QsQh"), hand("Ts8s"), hand("3c4d"), hand("9d2c") }) {
+				long mask = Card.mask(hero.cards());
+				int rank = evaluator.rank(mask | cards);
+				assertEquals(rank, strength.rank(hero));
+
+				/*
+				 * Rank every opposing hand directly.
+				 */
+				int weaker = 0, tied = 0, total = 0, beating = 0;
+				for (Hand villain : hands()) {
+					long other = Card.mask(villain.cards());
+					if (((mask | cards) & other) != 0) {
+						continue;
+					}
+					int result = evaluator.rank(other | cards);
+					total++;
+					weaker += result > rank ? 1 : 0;
+					tied += result == rank ? 1 : 0;
+					beating += result <= rank ? 1 : 0;
+				}
+				assertEquals((weaker + tied / 2.0) / total, strength.percentile(hero), 1e-12);
+
+				List<Hand> hands = strength.beating(hero);
+				assertEquals(beating, hands.size());
+				for (int i = 0; i < hands.size(); i++) {
+					assertEquals(0, Card.mask(hands.get(i).cards()) & mask);
+					assertTrue(i == 0 || strength.rank(hands.get(i - 1)) <= strength.rank(hands.get(i)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCache() {
+		assertSame(HandStrength.of(board("Qd9c2h")), HandStrength.of(board("2h9cQd")));
+		assertNotSame(HandStrength.of(board("Qd9c2h")), HandStrength.of(board("Qd9c3h")));
+	}
+
+	@Test
+	public void testNuts() {
+		HandStrength strength = HandStrength.of(board("Qd9c2h7s7d"));
+		assertEquals(1.0, strength.percentile(hand("7c7h")), 0.0);
+		assertTrue(strength.beating(hand("7c7h")).isEmpty());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testBoardConflict() {
+		HandStrength.of(board("Qd9c2h")).percentile(hand("QdQh"));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testPreflop() {
+		HandStrength.of(board());
+	}
+
+}
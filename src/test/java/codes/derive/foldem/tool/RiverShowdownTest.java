@@ -0,0 +1,141 @@
+/*
+ * This file is part of Fold'em, a Java library for Texas Hold 'em Poker.
+ *
+ * Fold'em is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fold'em is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fold'em.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package codes.derive.foldem.tool;
+
+import static codes.derive.foldem.Poker.*;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import codes.derive.foldem.Card;
+import codes.derive.foldem.Hand;
+import codes.derive.foldem.Range;
+import codes.derive.foldem.board.Board;
+import codes.derive.foldem.board.Street;
+import codes.derive.foldem.eval.DefaultEvaluator;
+import codes.derive.foldem.eval.Evaluator;
+import codes.derive.foldem.tool.EquityCalculationBuilder.Equity;
+
+public class RiverShowdownTest {
+
+	@Test
+	public void testAgainstPairs() {
+		Random random = new Random(7);
+		Evaluator evaluator = new DefaultEvaluator();
+		for (int round = 0; round < 5; round++) {
+			Board board = board(deck().shuffle(random), Street.RIVER);
+			Range range = randomRange(random, 300), villain = randomRange(random, 200);
+			RiverShowdown showdown = new RiverShowdown(board);
+
+			/*
+			 * Compare every pair of hands directly.
+			 */
+			long cards = Card.mask(board.cards());
+			double share = 0.0, total = 0.0;
+			double[] equities = showdown.equities(range, villain);
+			for (Hand a : range.all()) {
+				long maskA = Card.mask(a.cards());
+				if ((maskA & cards) != 0) {
+					assertTrue(Double.isNaN(equities[a.index()]));
+					continue;
+				}
+				double handShare = 0.0, handTotal = 0.0;
+				for (Hand b : villain.all()) {
+					long maskB = Card.mask(b.cards());
+					if (((maskA | cards) & maskB) != 0) {
+						continue;
+					}
+					int result = Integer.compare(evaluator.rank(maskA | cards), evaluator.rank(maskB | cards));
+					double weight = villain.weight(b);
+					handShare += weight * (result < 0 ? 1.0 : result == 0 ? 0.5 : 0.0);
+					handTotal += weight;
+				}
+				share += range.weight(a) * handShare;
+				total += range.weight(a) * handTotal;
+				if (handTotal > 0) {
+					assertEquals(handShare / handTotal, equities[a.index()], 1e-9);
+				}
+			}
+			assertEquals(share / total, showdown.equity(range, villain), 1e-9);
+		}
+	}
+
+	@Test
+	public void testCalculation() {
+		Board river = board("Qd9c2h7s7d");
+		Range range = new Range().define(hand("AcKc"), hand("Qs9s"), hand("7c7h")).define(0.5, hand("Tc8c"));
+		Range villain = new Range().define(hand("Js8s"), hand("KsKh"), hand("AsAh"), hand("Ac7h"));
+		Map<Range, Equity> equities = calculationBuilder().useBoard(river).useExhaustiveEnumeration()
+				.calculate(range, villain);
+		assertEquals(new RiverShowdown(river).equity(range, villain), equities.get(range).equity(), 1e-12);
+		assertEquals(1.0, equities.get(range).equity() + equities.get(villain).equity(), 1e-12);
+		assertEquals(0.0, equities.get(range).standardError(), 0.0);
+		assertEquals(12, equities.get(range).samples());
+
+		/*
+		 * Dead cards take their hands out of both ranges.
+		 */
+		equities = calculationBuilder().useBoard(river).useDeadCards(card("Tc"), card("Kh")).useExhaustiveEnumeration()
+				.calculate(range, villain);
+		Range live = new Range().define(hand("AcKc"), hand("Qs9s"), hand("7c7h"));
+		Range liveVillain = new Range().define(hand("Js8s"), hand("AsAh"), hand("Ac7h"));
+		assertEquals(new RiverShowdown(river).equity(live, liveVillain), equities.get(range).equity(), 1e-12);
+
+		/*
+		 * Without exhaustive enumeration the ranges are simulated as usual,
+		 * sending estimates to the listener.
+		 */
+		int[] updates = { 0 };
+		equities = calculationBuilder().useBoard(river).useSampleSize(2048)
+				.useListener(e -> ++updates[0] > 0, 1024).calculate(range, villain);
+		assertEquals(2, updates[0]);
+		assertEquals(2048, equities.get(range).samples());
+	}
+
+	@Test
+	public void testEvaluators() {
+		Board river = board("Qd9c2h7s7d");
+		Range range = new Range().define(hand("AcKc"), hand("Qs9s"), hand("7c7h"));
+		Range villain = new Range().define(hand("Js8s"), hand("KsKh"), hand("AsAh"));
+		double expected = new RiverShowdown(river).equity(range, villain);
+		assertEquals(expected, new RiverShowdown(river, new DefaultEvaluator()).equity(range, villain), 0);
+		assertEquals(expected, new RiverShowdown(river, new DefaultEvaluator() {}).equity(range, villain), 0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testIncompleteBoard() {
+		new RiverShowdown(board("Qd9c2h7s"));
+	}
+
+	/**
+	 * Creates a range of random hands with random weights.
+	 */
+	private static Range randomRange(Random random, int size) {
+		Range range = new Range();
+		for (int i = 0; i < size; i++) {
+			Hand hand = Hand.fromIndex(random.nextInt(1326));
+			if (!range.contains(hand)) {
+				range.define(random.nextInt(4) == 0 ? 0.05 + 0.9 * random.nextDouble() : 1.0, hand);
+			}
+		}
+		return range;
+	}
+
+}